@@ -1,12 +1,40 @@
 //Name : Siddharth Kakade
 //PRN : 123B1F040
 //Date : 7-7-25
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
 
 public class MergeSortWithScanner {
 
@@ -66,42 +94,1515 @@ public class MergeSortWithScanner {
         }
     }
 
-    public static void main(String[] args) {
+    // ---------------- Parallel Merge Sort (fork/join) ----------------
+
+    static final int INSERTION_CUTOFF = 32;             // ranges this small use insertion sort
+    static final int PARALLEL_SORT_THRESHOLD = 8_192;   // below this a range is sorted on one thread
+    static final int PARALLEL_MERGE_THRESHOLD = 16_384; // below this two runs are merged on one thread
+
+    // Parallel counterpart of mergeSort(arr, left, right); allocates one auxiliary array for the whole sort
+    public static void parallelMergeSort(Order[] arr, int left, int right) {
+        parallelMergeSort(arr, left, right, ForkJoinPool.commonPool());
+    }
+
+    public static void parallelMergeSort(Order[] arr, int left, int right, ForkJoinPool pool) {
+        if (left >= right) return;
+        Order[] aux = new Order[arr.length];
+        System.arraycopy(arr, left, aux, left, right - left + 1);
+        pool.invoke(new SortTask(aux, arr, left, right + 1));
+    }
+
+    // Sorts the range [lo, hi) into dst. src and dst hold the same elements on entry, so each
+    // half is sorted into src and the halves are merged back into dst: the arrays swap roles per level.
+    static class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final Order[] src, dst;
+        final int lo, hi;
+
+        SortTask(Order[] src, Order[] dst, int lo, int hi) {
+            this.src = src; this.dst = dst; this.lo = lo; this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= PARALLEL_SORT_THRESHOLD) {
+                sortInto(src, dst, lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new SortTask(dst, src, lo, mid), new SortTask(dst, src, mid, hi));
+            if (src[mid - 1].compareTo(src[mid]) <= 0) {
+                System.arraycopy(src, lo, dst, lo, hi - lo); // halves already in order
+                return;
+            }
+            new MergeTask(src, lo, mid, mid, hi, dst, lo).compute();
+        }
+    }
+
+    // Merges src[lo1, hi1) and src[lo2, hi2) into dst starting at `at`. Large merges are split
+    // at the median of the longer run, whose position in the other run is found by binary search.
+    static class MergeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        final Order[] src, dst;
+        final int lo1, hi1, lo2, hi2, at;
+
+        MergeTask(Order[] src, int lo1, int hi1, int lo2, int hi2, Order[] dst, int at) {
+            this.src = src; this.lo1 = lo1; this.hi1 = hi1; this.lo2 = lo2; this.hi2 = hi2;
+            this.dst = dst; this.at = at;
+        }
+
+        @Override
+        protected void compute() {
+            int n1 = hi1 - lo1, n2 = hi2 - lo2;
+            if (n1 + n2 <= PARALLEL_MERGE_THRESHOLD) {
+                mergeRuns(src, lo1, hi1, lo2, hi2, dst, at);
+                return;
+            }
+            int m1, m2;
+            if (n1 >= n2) {
+                m1 = (lo1 + hi1) >>> 1;
+                m2 = lowerBound(src, lo2, hi2, src[m1]); // right-run elements equal to the pivot stay after it
+            } else {
+                m2 = (lo2 + hi2) >>> 1;
+                m1 = upperBound(src, lo1, hi1, src[m2]); // left-run elements equal to the pivot stay before it
+            }
+            int split = at + (m1 - lo1) + (m2 - lo2);
+            invokeAll(new MergeTask(src, lo1, m1, lo2, m2, dst, at),
+                      new MergeTask(src, m1, hi1, m2, hi2, dst, split));
+        }
+    }
+
+    // Sequential version of SortTask (same src/dst alternation, no allocation)
+    static void sortInto(Order[] src, Order[] dst, int lo, int hi) {
+        if (hi - lo <= INSERTION_CUTOFF) {
+            insertionSort(dst, lo, hi);
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        sortInto(dst, src, lo, mid);
+        sortInto(dst, src, mid, hi);
+        if (src[mid - 1].compareTo(src[mid]) <= 0) {
+            System.arraycopy(src, lo, dst, lo, hi - lo);
+            return;
+        }
+        mergeRuns(src, lo, mid, mid, hi, dst, lo);
+    }
+
+    // Stable merge of two sorted runs of src into dst starting at k
+    static void mergeRuns(Order[] src, int i, int hi1, int j, int hi2, Order[] dst, int k) {
+        while (i < hi1 && j < hi2) {
+            if (src[i].compareTo(src[j]) <= 0)
+                dst[k++] = src[i++];
+            else
+                dst[k++] = src[j++];
+        }
+        while (i < hi1) dst[k++] = src[i++];
+        while (j < hi2) dst[k++] = src[j++];
+    }
+
+    // Stable insertion sort of a[lo, hi)
+    static void insertionSort(Order[] a, int lo, int hi) {
+        for (int i = lo + 1; i < hi; i++) {
+            Order x = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j].compareTo(x) > 0) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = x;
+        }
+    }
+
+    // First index in [lo, hi) whose element is >= key
+    static int lowerBound(Order[] a, int lo, int hi, Order key) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid].compareTo(key) < 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // First index in [lo, hi) whose element is > key
+    static int upperBound(Order[] a, int lo, int hi, Order key) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid].compareTo(key) <= 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // ---------------- Memory-mapped parallel ingest ----------------
+
+    static final String CSV_FILE = "customer_spending_1M_2018_2025.csv";
+    static final int TIMESTAMP_COLUMN = 1;                // Timestamp in 2nd column
+    static final int TIMESTAMP_LENGTH = 26;               // yyyy-MM-dd'T'HH:mm:ss.SSSSSS
+    static final long MAX_CHUNK_BYTES = 256L << 20;       // one mapping per chunk, well below 2 GB
+
+    // Rows parsed by the ingest path, kept as parallel primitive columns
+    static class OrderColumns {
+        long[] timestamps;  // epoch millis
+        long[] offsets;     // byte offset of the row start in the CSV file
+        String[] rows;      // full CSV line, only filled when asked for
+        int size;
+
+        OrderColumns(int capacity, boolean keepRows) {
+            timestamps = new long[capacity];
+            offsets = new long[capacity];
+            rows = keepRows ? new String[capacity] : null;
+        }
+
+        void add(long timestamp, long offset, String row) {
+            if (size == timestamps.length) {
+                int cap = Math.max(16, size + (size >> 1));
+                timestamps = Arrays.copyOf(timestamps, cap);
+                offsets = Arrays.copyOf(offsets, cap);
+                if (rows != null) rows = Arrays.copyOf(rows, cap);
+            }
+            timestamps[size] = timestamp;
+            offsets[size] = offset;
+            if (rows != null) rows[size] = row;
+            size++;
+        }
+
+        // Concatenate per-chunk results, keeping file order
+        static OrderColumns concat(List<OrderColumns> parts, boolean keepRows) {
+            int total = 0;
+            for (OrderColumns p : parts) total += p.size;
+            OrderColumns all = new OrderColumns(total, keepRows);
+            for (OrderColumns p : parts) {
+                System.arraycopy(p.timestamps, 0, all.timestamps, all.size, p.size);
+                System.arraycopy(p.offsets, 0, all.offsets, all.size, p.size);
+                if (keepRows) System.arraycopy(p.rows, 0, all.rows, all.size, p.size);
+                all.size += p.size;
+            }
+            return all;
+        }
+    }
+
+    // Parse yyyy-MM-dd'T'HH:mm:ss.SSSSSS straight from the mapped bytes (no String, no formatter).
+    // Mirrors parseTimestamp(String): 0 for malformed input, day-of-month clamped like the SMART resolver.
+    static long parseTimestamp(ByteBuffer buf, int pos, int len) {
+        if (len != TIMESTAMP_LENGTH) return 0;
+        if (buf.get(pos + 4) != '-' || buf.get(pos + 7) != '-' || buf.get(pos + 10) != 'T'
+                || buf.get(pos + 13) != ':' || buf.get(pos + 16) != ':' || buf.get(pos + 19) != '.') return 0;
+        int year = digits(buf, pos, 4);
+        int month = digits(buf, pos + 5, 2);
+        int day = digits(buf, pos + 8, 2);
+        int hour = digits(buf, pos + 11, 2);
+        int minute = digits(buf, pos + 14, 2);
+        int second = digits(buf, pos + 17, 2);
+        int micros = digits(buf, pos + 20, 6);
+        if ((year | month | day | hour | minute | second | micros) < 0) return 0;
+        if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 59) return 0;
+        day = Math.min(day, daysInMonth(year, month));
+        return epochDay(year, month, day) * 86_400_000L + hour * 3_600_000L + minute * 60_000L
+                + second * 1_000L + micros / 1_000;
+    }
+
+    // Fixed-width unsigned decimal, -1 if any byte is not a digit
+    static int digits(ByteBuffer buf, int pos, int count) {
+        int v = 0;
+        for (int i = 0; i < count; i++) {
+            int d = buf.get(pos + i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    static int daysInMonth(int year, int month) {
+        if (month == 2) return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar
+    static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146_097 + doe - 719_468;
+    }
+
+    // First byte after the next '\n' at or after pos (end if there is none)
+    static long nextLineStart(FileChannel ch, long pos, long end) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        while (pos < end) {
+            probe.clear();
+            int read = ch.read(probe, pos);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') return pos + i + 1;
+            }
+            pos += read;
+        }
+        return end;
+    }
+
+    // Split [start, end) into chunks of roughly chunkBytes that all begin at a line start
+    static long[] chunkBounds(FileChannel ch, long start, long end, long chunkBytes) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(start);
+        long pos = start;
+        while (end - pos > chunkBytes) {
+            long next = nextLineStart(ch, pos + chunkBytes, end);
+            if (next >= end) break;
+            bounds.add(next);
+            pos = next;
+        }
+        bounds.add(end);
+        long[] out = new long[bounds.size()];
+        for (int i = 0; i < out.length; i++) out[i] = bounds.get(i);
+        return out;
+    }
+
+    // Map one chunk and parse every row in it; offsets are absolute file positions
+    static OrderColumns parseChunk(FileChannel ch, long from, long to, boolean keepRows) throws IOException {
+        return parseMapped(mapChunk(ch, from, to), from, keepRows);
+    }
+
+    static MappedByteBuffer mapChunk(FileChannel ch, long from, long to) throws IOException {
+        if (to - from > Integer.MAX_VALUE) throw new IOException("Chunk too large to map: " + (to - from) + " bytes");
+        return ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    }
+
+    // Called for every non-blank row of a mapped chunk. [start, end) excludes the line terminator;
+    // [tsStart, tsEnd) is the timestamp field, tsStart < 0 if the row is too short to have one.
+    interface RowVisitor {
+        void row(ByteBuffer buf, int start, int end, int tsStart, int tsEnd);
+    }
+
+    // Walk the rows of a mapped chunk in order
+    static void forEachRow(ByteBuffer buf, RowVisitor visitor) {
+        int limit = buf.limit();
+        int pos = 0;
+        while (pos < limit) {
+            int start = pos;
+            int column = 0, fieldStart = -1, fieldEnd = -1;
+            while (pos < limit) {
+                byte b = buf.get(pos);
+                if (b == '\n') break;
+                if (b == ',') {
+                    column++;
+                    if (column == TIMESTAMP_COLUMN) fieldStart = pos + 1;
+                    else if (column == TIMESTAMP_COLUMN + 1) fieldEnd = pos;
+                }
+                pos++;
+            }
+            int end = pos;
+            pos++; // skip '\n'
+            if (end > start && buf.get(end - 1) == '\r') end--;
+            if (end == start) continue; // blank line
+            if (fieldStart >= 0 && fieldEnd < 0) fieldEnd = end;
+            visitor.row(buf, start, end, fieldStart, fieldEnd);
+        }
+    }
+
+    // Ingest visitor: appends (timestamp, offset[, line]) for each row of a chunk starting at `from`
+    static class ColumnCollector implements RowVisitor {
+        final OrderColumns cols;
+        final long from;
+        byte[] scratch = new byte[256];
+
+        ColumnCollector(OrderColumns cols, long from) {
+            this.cols = cols;
+            this.from = from;
+        }
+
+        @Override
+        public void row(ByteBuffer buf, int start, int end, int tsStart, int tsEnd) {
+            long timestamp = tsStart < 0 ? 0 : parseTimestamp(buf, tsStart, tsEnd - tsStart);
+            String row = null;
+            if (cols.rows != null) {
+                int len = end - start;
+                if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+                copyBytes(buf, start, scratch, 0, len);
+                row = new String(scratch, 0, len, StandardCharsets.UTF_8);
+            }
+            cols.add(timestamp, from + start, row);
+        }
+    }
+
+    // Copy len bytes from buf[index..] without moving buf's position (the absolute bulk get is JDK 13+)
+    static void copyBytes(ByteBuffer buf, int index, byte[] dst, int off, int len) {
+        ByteBuffer view = buf.duplicate();
+        view.position(index);
+        view.get(dst, off, len);
+    }
+
+    // Parse every row of an already-mapped chunk that starts at file position `from`
+    static OrderColumns parseMapped(ByteBuffer buf, long from, boolean keepRows) {
+        OrderColumns cols = new OrderColumns(Math.max(16, buf.limit() / 64), keepRows);
+        forEachRow(buf, new ColumnCollector(cols, from));
+        return cols;
+    }
+
+    // Work done on one newline-aligned chunk [from, to) of the CSV
+    interface ChunkTask<T> {
+        T run(FileChannel ch, long from, long to) throws IOException;
+    }
+
+    // Split the data rows of `file` into chunks and run `task` on each using `threads` workers.
+    // Results come back in file order.
+    static <T> List<T> mapChunks(Path file, int threads, ChunkTask<T> task) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long start = nextLineStart(ch, 0, size); // skip header
+            long chunkBytes = Math.max(1L << 20, Math.min(MAX_CHUNK_BYTES, (size - start) / (threads * 4L) + 1));
+            long[] bounds = chunkBounds(ch, start, size, chunkBytes);
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<T>> tasks = new ArrayList<>();
+                for (int c = 0; c + 1 < bounds.length; c++) {
+                    long from = bounds[c], to = bounds[c + 1];
+                    tasks.add(pool.submit(() -> task.run(ch, from, to)));
+                }
+                List<T> results = new ArrayList<>();
+                for (Future<T> t : tasks) results.add(await(t));
+                return results;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    // Memory-map the CSV and parse newline-aligned chunks on `threads` workers; rows stay in file order
+    public static OrderColumns ingest(Path file, int threads, boolean keepRows) throws IOException {
+        List<OrderColumns> parts = mapChunks(file, threads, (ch, from, to) -> parseChunk(ch, from, to, keepRows));
+        return OrderColumns.concat(parts, keepRows);
+    }
+
+    // Mapped ingest producing the same Order[] the Scanner path builds
+    public static Order[] ingestOrders(Path file, int threads) throws IOException {
+        OrderColumns cols = ingest(file, threads, true);
+        Order[] orders = new Order[cols.size];
+        for (int i = 0; i < cols.size; i++) {
+            orders[i] = new Order(cols.timestamps[i], cols.rows[i]);
+        }
+        return orders;
+    }
+
+    // Future.get that surfaces worker IOExceptions as-is
+    static <T> T await(Future<T> f) throws IOException {
         try {
-            Scanner sc = new Scanner(new File("customer_spending_1M_2018_2025.csv"));
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Ingest interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    // ---------------- Columnar sort: long keys + row offsets ----------------
+
+    // Stable LSD radix sort of keys[0..n), carrying payload[] along. 8 bits per pass;
+    // passes where every key has the same byte (e.g. the high bytes of epoch millis) are skipped.
+    public static void radixSort(long[] keys, long[] payload, int n) {
+        if (n < 2) return;
+        int[] counts = new int[8 * 256];
+        for (int i = 0; i < n; i++) {
+            long k = keys[i] ^ Long.MIN_VALUE; // flip sign bit so unsigned byte order == signed order
+            for (int b = 0; b < 8; b++) counts[(b << 8) + (int) ((k >>> (b << 3)) & 0xFF)]++;
+        }
+
+        long[] srcK = keys, srcP = payload;
+        long[] dstK = new long[n], dstP = new long[n];
+        for (int b = 0; b < 8; b++) {
+            int base = b << 8, shift = b << 3;
+            if (counts[base + (int) (((srcK[0] ^ Long.MIN_VALUE) >>> shift) & 0xFF)] == n) continue;
+
+            int sum = 0;
+            for (int d = 0; d < 256; d++) {
+                int c = counts[base + d];
+                counts[base + d] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < n; i++) {
+                long k = srcK[i];
+                int at = counts[base + (int) (((k ^ Long.MIN_VALUE) >>> shift) & 0xFF)]++;
+                dstK[at] = k;
+                dstP[at] = srcP[i];
+            }
+            long[] t = srcK; srcK = dstK; dstK = t;
+            t = srcP; srcP = dstP; dstP = t;
+        }
+        if (srcK != keys) {
+            System.arraycopy(srcK, 0, keys, 0, n);
+            System.arraycopy(srcP, 0, payload, 0, n);
+        }
+    }
+
+    // Stable bottom-up merge sort on the same columns (comparison-based alternative to radixSort)
+    public static void mergeSortColumns(long[] keys, long[] payload, int n) {
+        long[] srcK = keys, srcP = payload;
+        long[] dstK = new long[n], dstP = new long[n];
+        for (int width = 1; width < n; width <<= 1) {
+            for (int lo = 0; lo < n; lo += width << 1) {
+                int mid = Math.min(lo + width, n), hi = Math.min(lo + (width << 1), n);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi) {
+                    if (srcK[i] <= srcK[j]) { dstK[k] = srcK[i]; dstP[k++] = srcP[i++]; }
+                    else { dstK[k] = srcK[j]; dstP[k++] = srcP[j++]; }
+                }
+                while (i < mid) { dstK[k] = srcK[i]; dstP[k++] = srcP[i++]; }
+                while (j < hi) { dstK[k] = srcK[j]; dstP[k++] = srcP[j++]; }
+            }
+            long[] t = srcK; srcK = dstK; dstK = t;
+            t = srcP; srcP = dstP; dstP = t;
+        }
+        if (srcK != keys) {
+            System.arraycopy(srcK, 0, keys, 0, n);
+            System.arraycopy(srcP, 0, payload, 0, n);
+        }
+    }
+
+    // Sort ingested columns by timestamp; offsets move with their keys (rows[] is not reordered)
+    public static void sortColumns(OrderColumns cols, boolean radix) {
+        if (radix) radixSort(cols.timestamps, cols.offsets, cols.size);
+        else mergeSortColumns(cols.timestamps, cols.offsets, cols.size);
+    }
+
+    // Decode the CSV line starting at byte `offset`; only called for rows that are actually shown
+    static String readRow(FileChannel ch, long offset) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(512);
+        long pos = offset;
+        while (true) {
+            int read = ch.read(buf, pos);
+            int len = buf.position();
+            for (int i = (int) (pos - offset); i < len; i++) {
+                if (buf.get(i) == '\n') return decodeLine(buf, i);
+            }
+            if (read <= 0) return decodeLine(buf, len); // last line without '\n'
+            pos = offset + len;
+            if (!buf.hasRemaining()) buf = ByteBuffer.allocate(buf.capacity() * 2).put(buf.array(), 0, len);
+        }
+    }
+
+    private static String decodeLine(ByteBuffer buf, int end) {
+        if (end > 0 && buf.get(end - 1) == '\r') end--;
+        return new String(buf.array(), 0, end, StandardCharsets.UTF_8);
+    }
+
+    // Columnar pipeline: mapped ingest -> primitive sort -> materialize only the printed rows
+    static void runColumnar(Path file, int threads, boolean radix, int show) throws IOException {
+        long loadStart = System.currentTimeMillis();
+        OrderColumns cols = ingest(file, threads, false);
+        System.out.println("Loaded " + cols.size + " rows (columnar) in " + (System.currentTimeMillis() - loadStart) + " ms");
+
+        System.out.println("Sorting " + cols.size + " records using " + (radix ? "LSD Radix Sort" : "primitive Merge Sort") + "...");
+        long startTime = System.currentTimeMillis();
+        sortColumns(cols, radix);
+        long endTime = System.currentTimeMillis();
+        System.out.println("Sorting completed in " + (endTime - startTime) + " ms");
+
+        System.out.println("First " + show + " sorted results:");
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < Math.min(show, cols.size); i++) {
+                System.out.println(readRow(ch, cols.offsets[i]));
+            }
+        }
+    }
+
+    // ---------------- External (out-of-core) merge sort ----------------
+
+    static final int RUN_RECORD_HEADER = Long.BYTES + Integer.BYTES; // [long timestamp][int length][row bytes]
+    static final int MIN_RUN_BUFFER = 64 << 10;
+    static final int MAX_RUN_BUFFER = 8 << 20;
+
+    // Sorts a CSV of any size into `out` (header first) using roughly `memoryBudget` bytes of heap.
+    // Phase 1: newline-aligned batches are mapped, parsed into timestamp/offset columns, radix-sorted
+    // and spilled to binary run files. Phase 2: runs are k-way merged through a heap; if there are
+    // too many runs for the budget, they are first merged in groups (multi-pass). Returns rows written.
+    public static long externalSort(Path in, Path out, long memoryBudget, Path tempDir) throws IOException {
+        // batch heap cost is ~32 bytes per row (columns + radix buffers), rows are far wider than that
+        long batchBytes = Math.max(1L << 20, Math.min(memoryBudget / 2, Integer.MAX_VALUE - (1L << 20)));
+        int fanIn = (int) Math.max(2, Math.min(1024, memoryBudget / (2L * MIN_RUN_BUFFER)));
+        List<Path> runs = new ArrayList<>();
+        List<Path> temps = new ArrayList<>(); // every run file created, for cleanup on failure
+        try {
+            String header;
+            long rows = 0;
+            try (FileChannel ch = FileChannel.open(in, StandardOpenOption.READ)) {
+                long size = ch.size();
+                header = size == 0 ? "" : readRow(ch, 0);
+                long start = nextLineStart(ch, 0, size);
+                long[] bounds = chunkBounds(ch, start, size, batchBytes);
+                ByteBuffer outBuf = ByteBuffer.allocateDirect(MAX_RUN_BUFFER); // shared by all runs
+                for (int b = 0; b + 1 < bounds.length; b++) {
+                    if (bounds[b] == bounds[b + 1]) continue;
+                    Path run = Files.createTempFile(tempDir, "orders-run-", ".bin");
+                    temps.add(run);
+                    runs.add(run);
+                    rows += spillRun(ch, bounds[b], bounds[b + 1], run, outBuf);
+                }
+            }
 
-            // Skip header
-            String header = sc.nextLine();
+            while (runs.size() > fanIn) {
+                List<Path> next = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += fanIn) {
+                    List<Path> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+                    Path merged = Files.createTempFile(tempDir, "orders-run-", ".bin");
+                    temps.add(merged);
+                    next.add(merged);
+                    mergeRunFiles(group, merged, null, memoryBudget);
+                    for (Path p : group) Files.deleteIfExists(p);
+                }
+                runs = next;
+            }
+            mergeRunFiles(runs, out, header, memoryBudget);
+            return rows;
+        } finally {
+            for (Path p : temps) Files.deleteIfExists(p);
+        }
+    }
+
+    // Sort one batch [from, to) of the CSV and write it as a run file through outBuf (empty on entry
+    // and on return); returns rows in the run
+    static int spillRun(FileChannel ch, long from, long to, Path run, ByteBuffer outBuf) throws IOException {
+        MappedByteBuffer buf = mapChunk(ch, from, to);
+        OrderColumns cols = parseMapped(buf, from, false);
+        radixSort(cols.timestamps, cols.offsets, cols.size);
+
+        try (FileChannel w = FileChannel.open(run, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] scratch = new byte[256];
+            int limit = buf.limit();
+            for (int i = 0; i < cols.size; i++) {
+                int start = (int) (cols.offsets[i] - from);
+                int end = start;
+                while (end < limit && buf.get(end) != '\n') end++;
+                if (end > start && buf.get(end - 1) == '\r') end--;
+                int len = end - start;
+                if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+                copyBytes(buf, start, scratch, 0, len);
+                writeRecord(w, outBuf, cols.timestamps[i], scratch, len);
+            }
+            flush(w, outBuf);
+        }
+        return cols.size;
+    }
+
+    // Append one [timestamp][length][bytes] record, flushing the buffer when it is full
+    static void writeRecord(FileChannel w, ByteBuffer outBuf, long timestamp, byte[] row, int len) throws IOException {
+        if (outBuf.remaining() < RUN_RECORD_HEADER + len) flush(w, outBuf);
+        if (outBuf.remaining() < RUN_RECORD_HEADER + len) { // row larger than the whole buffer
+            ByteBuffer big = ByteBuffer.allocate(RUN_RECORD_HEADER + len);
+            big.putLong(timestamp).putInt(len).put(row, 0, len).flip();
+            while (big.hasRemaining()) w.write(big);
+            return;
+        }
+        outBuf.putLong(timestamp).putInt(len).put(row, 0, len);
+    }
+
+    // Append raw bytes (a CSV line), flushing the buffer when it is full
+    static void writeBytes(FileChannel w, ByteBuffer outBuf, byte[] bytes, int len) throws IOException {
+        if (outBuf.remaining() < len) flush(w, outBuf);
+        if (outBuf.remaining() < len) {
+            ByteBuffer big = ByteBuffer.wrap(bytes, 0, len);
+            while (big.hasRemaining()) w.write(big);
+            return;
+        }
+        outBuf.put(bytes, 0, len);
+    }
+
+    static void flush(FileChannel w, ByteBuffer outBuf) throws IOException {
+        outBuf.flip();
+        while (outBuf.hasRemaining()) w.write(outBuf);
+        outBuf.clear();
+    }
+
+    // K-way merge of run files. With a header the output is CSV text, otherwise another run file.
+    // Ties on timestamp go to the earlier run, so the whole external sort is stable.
+    static void mergeRunFiles(List<Path> runs, Path out, String header, long memoryBudget) throws IOException {
+        int bufferBytes = (int) Math.max(MIN_RUN_BUFFER, Math.min(MAX_RUN_BUFFER, memoryBudget / (runs.size() + 1)));
+        PriorityQueue<RunReader> heap = new PriorityQueue<>((a, b) -> a.timestamp != b.timestamp
+                ? Long.compare(a.timestamp, b.timestamp) : Integer.compare(a.run, b.run));
+        List<RunReader> readers = new ArrayList<>();
+        try (FileChannel w = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int r = 0; r < runs.size(); r++) {
+                RunReader reader = new RunReader(FileChannel.open(runs.get(r), StandardOpenOption.READ), r, bufferBytes);
+                readers.add(reader);
+                if (reader.next()) heap.add(reader);
+            }
 
-            Order[] orders = new Order[1_000_000];
-            int index = 0;
+            ByteBuffer outBuf = ByteBuffer.allocateDirect(bufferBytes);
+            byte[] newline = {'\n'};
+            if (header != null) {
+                byte[] h = header.getBytes(StandardCharsets.UTF_8);
+                writeBytes(w, outBuf, h, h.length);
+                writeBytes(w, outBuf, newline, 1);
+            }
+            while (!heap.isEmpty()) {
+                RunReader top = heap.poll();
+                if (header != null) {
+                    writeBytes(w, outBuf, top.row, top.rowLen);
+                    writeBytes(w, outBuf, newline, 1);
+                } else {
+                    writeRecord(w, outBuf, top.timestamp, top.row, top.rowLen);
+                }
+                if (top.next()) heap.add(top);
+            }
+            flush(w, outBuf);
+        } finally {
+            for (RunReader r : readers) r.close();
+        }
+    }
+
+    // Buffered sequential reader over one run file
+    static class RunReader implements Closeable {
+        final FileChannel ch;
+        final ByteBuffer buf;
+        final int run;       // run number, used to keep the merge stable
+        long timestamp;
+        byte[] row = new byte[256];
+        int rowLen;
 
-            // Read rows
-            while (sc.hasNextLine() && index < orders.length) {
-                String line = sc.nextLine();
-                String[] parts = line.split(",", -1);
-                String timestampStr = parts[1]; // Timestamp in 2nd column
-                long timestamp = parseTimestamp(timestampStr);
+        RunReader(FileChannel ch, int run, int bufferBytes) {
+            this.ch = ch;
+            this.run = run;
+            this.buf = ByteBuffer.allocateDirect(bufferBytes);
+            buf.flip(); // start empty
+        }
+
+        // Advance to the next record; false at end of run
+        boolean next() throws IOException {
+            while (buf.remaining() < RUN_RECORD_HEADER) {
+                if (!fill()) {
+                    if (buf.hasRemaining()) throw new EOFException("Truncated run file");
+                    return false;
+                }
+            }
+            timestamp = buf.getLong();
+            rowLen = buf.getInt();
+            if (rowLen > row.length) row = new byte[Math.max(rowLen, row.length * 2)];
+            int copied = 0;
+            while (copied < rowLen) {
+                if (!buf.hasRemaining() && !fill()) throw new EOFException("Truncated run file");
+                int k = Math.min(buf.remaining(), rowLen - copied);
+                buf.get(row, copied, k);
+                copied += k;
+            }
+            return true;
+        }
+
+        private boolean fill() throws IOException {
+            buf.compact();
+            int read = ch.read(buf);
+            buf.flip();
+            return read > 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+
+    // External mode for main: sort `in` into `out` within the budget, then show the first rows
+    static void runExternal(Path in, Path out, long memoryBudget, int show) throws IOException {
+        Path tempDir = out.toAbsolutePath().getParent();
+        System.out.println("External Merge Sort with a " + (memoryBudget >> 20) + " MB budget...");
+        long startTime = System.currentTimeMillis();
+        long rows = externalSort(in, out, memoryBudget, tempDir);
+        long endTime = System.currentTimeMillis();
+        System.out.println("Sorted " + rows + " records into " + out + " in " + (endTime - startTime) + " ms");
+
+        System.out.println("First " + show + " sorted results:");
+        try (BufferedReader br = Files.newBufferedReader(out, StandardCharsets.UTF_8)) {
+            br.readLine(); // skip header
+            String line;
+            for (int i = 0; i < show && (line = br.readLine()) != null; i++) {
+                System.out.println(line);
+            }
+        }
+    }
+
+    // ---------------- Persistent sorted timestamp index ----------------
+
+    static final int INDEX_MAGIC = 0x54534958; // "TSIX"
+    static final int INDEX_VERSION = 1;
+    static final int INDEX_HEADER = 40;        // magic, version, csv size, csv mtime, row count, padding
+
+    // Sorted timestamps + row byte offsets on disk, memory-mapped for range queries without re-parsing.
+    // Layout: header, then long[size] timestamps, then long[size] offsets (big-endian).
+    static class TimestampIndex implements Closeable {
+        final FileChannel csv;        // source file, to turn offsets back into rows
+        final LongBuffer timestamps;
+        final LongBuffer offsets;
+        final int size;
+        String rebuildReason;         // set by openOrBuildIndex when a stale index was replaced
+
+        private TimestampIndex(FileChannel csv, LongBuffer timestamps, LongBuffer offsets, int size) {
+            this.csv = csv;
+            this.timestamps = timestamps;
+            this.offsets = offsets;
+            this.size = size;
+        }
+
+        // Write already-sorted columns for `csvFile`; the CSV's size and mtime are recorded to detect staleness
+        static void write(Path indexFile, Path csvFile, OrderColumns sorted) throws IOException {
+            try (FileChannel w = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buf = ByteBuffer.allocateDirect(MAX_RUN_BUFFER);
+                buf.putInt(INDEX_MAGIC).putInt(INDEX_VERSION)
+                   .putLong(Files.size(csvFile))
+                   .putLong(Files.getLastModifiedTime(csvFile).toMillis())
+                   .putLong(sorted.size).putLong(0);
+                putLongs(w, buf, sorted.timestamps, sorted.size);
+                putLongs(w, buf, sorted.offsets, sorted.size);
+                flush(w, buf);
+            }
+        }
 
-                orders[index++] = new Order(timestamp, line);
+        private static void putLongs(FileChannel w, ByteBuffer buf, long[] values, int n) throws IOException {
+            for (int i = 0; i < n; ) {
+                if (buf.remaining() < Long.BYTES) flush(w, buf);
+                int k = Math.min(n - i, buf.remaining() / Long.BYTES);
+                buf.asLongBuffer().put(values, i, k);
+                buf.position(buf.position() + k * Long.BYTES);
+                i += k;
             }
-            sc.close();
+        }
+
+        // Map an index; fails if it is not an index or was built from a different version of the CSV
+        static TimestampIndex open(Path indexFile, Path csvFile) throws IOException {
+            try (FileChannel ch = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+                if (ch.size() < INDEX_HEADER) throw new IOException("Not a timestamp index: " + indexFile);
+                ByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, INDEX_HEADER);
+                if (header.getInt() != INDEX_MAGIC || header.getInt() != INDEX_VERSION)
+                    throw new IOException("Not a timestamp index: " + indexFile);
+                if (header.getLong() != Files.size(csvFile)
+                        || header.getLong() != Files.getLastModifiedTime(csvFile).toMillis())
+                    throw new IOException("Stale index: " + csvFile + " changed since " + indexFile + " was built");
+                long count = header.getLong();
+                long bytes = count * Long.BYTES;
+                if (bytes > Integer.MAX_VALUE) throw new IOException("Index too large to map: " + count + " rows");
+                if (ch.size() < INDEX_HEADER + 2 * bytes) throw new IOException("Truncated index: " + indexFile);
+
+                LongBuffer ts = ch.map(FileChannel.MapMode.READ_ONLY, INDEX_HEADER, bytes).asLongBuffer();
+                LongBuffer off = ch.map(FileChannel.MapMode.READ_ONLY, INDEX_HEADER + bytes, bytes).asLongBuffer();
+                return new TimestampIndex(FileChannel.open(csvFile, StandardOpenOption.READ), ts, off, (int) count);
+            }
+        }
+
+        // First position whose timestamp is >= t
+        int lowerBound(long t) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (timestamps.get(mid) < t) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        // Number of rows with from <= timestamp < to
+        int count(long from, long to) {
+            return Math.max(0, lowerBound(to) - lowerBound(from));
+        }
+
+        // Up to `limit` rows with from <= timestamp < to, in timestamp order
+        List<String> range(long from, long to, int limit) throws IOException {
+            int lo = lowerBound(from), hi = Math.min(lowerBound(to), lo + limit);
+            return rows(lo, hi);
+        }
+
+        List<String> first(int n) throws IOException {
+            return rows(0, Math.min(n, size));
+        }
+
+        List<String> last(int n) throws IOException {
+            return rows(Math.max(0, size - n), size);
+        }
+
+        List<String> rows(int lo, int hi) throws IOException {
+            List<String> out = new ArrayList<>();
+            for (int i = lo; i < hi; i++) out.add(readRow(csv, offsets.get(i)));
+            return out;
+        }
+
+        @Override
+        public void close() throws IOException {
+            csv.close();
+        }
+    }
+
+    static Path indexPathFor(Path csvFile) {
+        return csvFile.resolveSibling(csvFile.getFileName() + ".tsidx");
+    }
+
+    // Ingest + radix sort once, then persist the index next to the CSV
+    public static TimestampIndex buildIndex(Path csvFile, int threads) throws IOException {
+        OrderColumns cols = ingest(csvFile, threads, false);
+        radixSort(cols.timestamps, cols.offsets, cols.size);
+        TimestampIndex.write(indexPathFor(csvFile), csvFile, cols);
+        return TimestampIndex.open(indexPathFor(csvFile), csvFile);
+    }
+
+    // Open the persisted index, rebuilding it when it is missing or stale; why an existing index
+    // was rejected is left in rebuildReason for the caller to report
+    public static TimestampIndex openOrBuildIndex(Path csvFile, int threads) throws IOException {
+        Path indexFile = indexPathFor(csvFile);
+        String reason = null;
+        if (Files.exists(indexFile)) {
+            try {
+                return TimestampIndex.open(indexFile, csvFile);
+            } catch (IOException e) {
+                reason = e.getMessage();
+            }
+        }
+        TimestampIndex idx = buildIndex(csvFile, threads);
+        idx.rebuildReason = reason;
+        return idx;
+    }
+
+    // Accepts the CSV layout or a bare yyyy-MM-dd (midnight)
+    static long parseQueryTime(String s) {
+        String ts = s.length() == 10 ? s + "T00:00:00.000000" : s;
+        try {
+            return LocalDateTime.parse(ts, DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS"))
+                    .toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Bad timestamp: " + s);
+        }
+    }
+
+    // Index modes for main: index | range <from> <to> | first <n> | last <n>
+    static void runIndexQuery(String mode, Path csvFile, String[] params, int threads) throws IOException {
+        long startTime = System.currentTimeMillis();
+        if (mode.equals("index")) {
+            try (TimestampIndex idx = buildIndex(csvFile, threads)) {
+                System.out.println("Indexed " + idx.size + " records into " + indexPathFor(csvFile)
+                        + " in " + (System.currentTimeMillis() - startTime) + " ms");
+            }
+            return;
+        }
+        // Check the arguments before opening (or rebuilding) the index
+        long from = 0, to = 0;
+        int n = 10;
+        if (mode.equals("range")) {
+            if (params.length != 2) throw new IllegalArgumentException("range needs <from> <to>");
+            from = parseQueryTime(params[0]);
+            to = parseQueryTime(params[1]);
+        } else if (params.length > 0) {
+            try {
+                n = Integer.parseInt(params[0]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Row count must be a number: " + params[0]);
+            }
+            if (n < 0) throw new IllegalArgumentException("Row count must not be negative: " + n);
+        }
+        try (TimestampIndex idx = openOrBuildIndex(csvFile, threads)) {
+            if (idx.rebuildReason != null) System.out.println(idx.rebuildReason + ", rebuilt");
+            List<String> rows;
+            if (mode.equals("range")) {
+                System.out.println(idx.count(from, to) + " records in [" + params[0] + ", " + params[1] + ")");
+                rows = idx.range(from, to, 10);
+            } else {
+                rows = mode.equals("first") ? idx.first(n) : idx.last(n);
+            }
+            System.out.println("Query answered in " + (System.currentTimeMillis() - startTime) + " ms");
+            for (String row : rows) System.out.println(row);
+        }
+    }
+
+    // ---------------- Streaming top-K ----------------
+
+    // Predicate on the raw bytes of a row [start, end), e.g. State == "Texas"
+    interface RowFilter {
+        boolean test(ByteBuffer buf, int start, int end);
+    }
+
+    // Start of field `column` in the row, or -1 if the row has fewer fields
+    static int fieldStart(ByteBuffer buf, int start, int end, int column) {
+        int pos = start;
+        for (int c = 0; c < column; c++) {
+            while (pos < end && buf.get(pos) != ',') pos++;
+            if (pos >= end) return -1;
+            pos++;
+        }
+        return pos;
+    }
+
+    // End (exclusive) of the field starting at pos
+    static int fieldEnd(ByteBuffer buf, int pos, int end) {
+        while (pos < end && buf.get(pos) != ',') pos++;
+        return pos;
+    }
+
+    // Field `column` equals `value` byte for byte
+    static RowFilter columnEquals(int column, String value) {
+        byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+        return (buf, start, end) -> {
+            int fs = fieldStart(buf, start, end, column);
+            if (fs < 0 || fieldEnd(buf, fs, end) - fs != expected.length) return false;
+            for (int i = 0; i < expected.length; i++) {
+                if (buf.get(fs + i) != expected[i]) return false;
+            }
+            return true;
+        };
+    }
+
+    // Column number of `name` in the CSV header (case-insensitive), or the name itself if it is a number
+    static int columnIndex(String header, String name) {
+        String[] names = header.split(",", -1);
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].trim().equalsIgnoreCase(name)) return i;
+        }
+        try {
+            return Integer.parseInt(name);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unknown column: " + name);
+        }
+    }
+
+    // Bounded min-heap keeping the K largest (key, tie) pairs; the root is the next one to evict
+    static class TopKHeap {
+        final long[] keys, ties;
+        final int k;
+        int size;
+
+        TopKHeap(int k) {
+            if (k < 0) throw new IllegalArgumentException("k must not be negative: " + k);
+            this.k = k;
+            keys = new long[k];
+            ties = new long[k];
+        }
+
+        // Whether (key, tie) would be kept right now (cheap check before evaluating filters)
+        boolean accepts(long key, long tie) {
+            return size < k || (k > 0 && less(keys[0], ties[0], key, tie));
+        }
+
+        void offer(long key, long tie) {
+            if (size < k) {
+                keys[size] = key;
+                ties[size] = tie;
+                siftUp(size++);
+            } else if (accepts(key, tie)) {
+                keys[0] = key;
+                ties[0] = tie;
+                siftDown(0);
+            }
+        }
+
+        // Empties the heap into `out`, largest first
+        void drainDescending(long[] outKeys, long[] outTies) {
+            for (int i = size - 1; i >= 0; i--) {
+                outKeys[i] = keys[0];
+                outTies[i] = ties[0];
+                size--;
+                keys[0] = keys[size];
+                ties[0] = ties[size];
+                siftDown(0);
+            }
+        }
+
+        private static boolean less(long k1, long t1, long k2, long t2) {
+            return k1 < k2 || (k1 == k2 && t1 < t2);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                if (!less(keys[i], ties[i], keys[p], ties[p])) break;
+                swap(i, p);
+                i = p;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int l = 2 * i + 1, r = l + 1, m = i;
+                if (l < size && less(keys[l], ties[l], keys[m], ties[m])) m = l;
+                if (r < size && less(keys[r], ties[r], keys[m], ties[m])) m = r;
+                if (m == i) return;
+                swap(i, m);
+                i = m;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long t = keys[a]; keys[a] = keys[b]; keys[b] = t;
+            t = ties[a]; ties[a] = ties[b]; ties[b] = t;
+        }
+    }
+
+    // Earliest or latest K rows matching every filter, streamed through one bounded heap per chunk,
+    // O(n log K) time and O(K) memory per worker. Ties on timestamp are broken by file position.
+    // Returns the winners as columns, in result order (earliest first, or latest first).
+    public static OrderColumns topK(Path file, int k, boolean latest, List<RowFilter> filters, int threads) throws IOException {
+        // Heaps keep the largest pairs; for "earliest" both key and tie are complemented (~x reverses order)
+        List<TopKHeap> heaps = mapChunks(file, threads, (ch, from, to) -> {
+            TopKHeap heap = new TopKHeap(k);
+            forEachRow(mapChunk(ch, from, to), (buf, start, end, tsStart, tsEnd) -> {
+                long ts = tsStart < 0 ? 0 : parseTimestamp(buf, tsStart, tsEnd - tsStart);
+                long key = latest ? ts : ~ts, tie = latest ? from + start : ~(from + start);
+                if (!heap.accepts(key, tie)) return;
+                for (RowFilter f : filters) {
+                    if (!f.test(buf, start, end)) return;
+                }
+                heap.offer(key, tie);
+            });
+            return heap;
+        });
+
+        TopKHeap all = new TopKHeap(k);
+        for (TopKHeap h : heaps) {
+            for (int i = 0; i < h.size; i++) all.offer(h.keys[i], h.ties[i]);
+        }
+        OrderColumns result = new OrderColumns(all.size, false);
+        result.size = all.size;
+        all.drainDescending(result.timestamps, result.offsets);
+        if (!latest) {
+            for (int i = 0; i < result.size; i++) {
+                result.timestamps[i] = ~result.timestamps[i];
+                result.offsets[i] = ~result.offsets[i];
+            }
+        }
+        return result;
+    }
+
+    // Top-K mode for main: top [csv] [k] [earliest|latest] [column=value ...]
+    static void runTopK(Path file, String[] params, int threads) throws IOException {
+        int k = 10;
+        if (params.length > 0) {
+            try {
+                k = Integer.parseInt(params[0]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("k must be a number: " + params[0]);
+            }
+            if (k < 0) throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        boolean latest = params.length <= 1 || !params[1].equals("earliest");
+        List<RowFilter> filters = new ArrayList<>();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            String header = readRow(ch, 0);
+            for (int i = 2; i < params.length; i++) {
+                int eq = params[i].indexOf('=');
+                if (eq < 0) throw new IllegalArgumentException("Filter must look like column=value: " + params[i]);
+                filters.add(columnEquals(columnIndex(header, params[i].substring(0, eq)), params[i].substring(eq + 1)));
+            }
+
+            long startTime = System.currentTimeMillis();
+            OrderColumns top = topK(file, k, latest, filters, threads);
+            long endTime = System.currentTimeMillis();
+            System.out.println((latest ? "Latest " : "Earliest ") + top.size + " matching records (streamed in "
+                    + (endTime - startTime) + " ms):");
+            for (int i = 0; i < top.size; i++) {
+                System.out.println(readRow(ch, top.offsets[i]));
+            }
+        }
+    }
+
+    // ---------------- Parallel group-by aggregation ----------------
+
+    static final int SPENDING_COLUMN = 10;          // spending amount, last column
+    static final int BY_DAY = -1, BY_MONTH = -2;    // time-bucket dimensions; other dimensions are column numbers
+    static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    // One output group: key labels plus row count, count of non-empty values, and their sum
+    static class AggregateRow {
+        final String[] key;
+        long rows;
+        long values;
+        double sum;
+
+        AggregateRow(String[] key) {
+            this.key = key;
+        }
+
+        double average() {
+            return values == 0 ? Double.NaN : sum / values;
+        }
+    }
+
+    // Splits the row into fields 0..maxColumn; returns how many were found
+    static int splitFields(ByteBuffer buf, int start, int end, int[] fieldStarts, int[] fieldEnds, int maxColumn) {
+        int column = 0, pos = start;
+        fieldStarts[0] = start;
+        while (pos < end && column <= maxColumn) {
+            if (buf.get(pos) == ',') {
+                fieldEnds[column++] = pos;
+                if (column <= maxColumn) fieldStarts[column] = pos + 1;
+            }
+            pos++;
+        }
+        if (column <= maxColumn) fieldEnds[column++] = end;
+        return column;
+    }
+
+    // Plain decimal such as 1557.5 or -3 read from the bytes; NaN if empty or not a number
+    static double parseDecimal(ByteBuffer buf, int from, int to) {
+        if (from >= to) return Double.NaN;
+        int pos = from;
+        boolean negative = buf.get(pos) == '-';
+        if (negative || buf.get(pos) == '+') pos++;
+        long mantissa = 0;
+        int digits = 0, scale = -1;
+        for (; pos < to; pos++) {
+            int b = buf.get(pos);
+            if (b == '.' && scale < 0) { scale = 0; continue; }
+            int d = b - '0';
+            if (d < 0 || d > 9 || digits >= 18) return parseDecimalSlow(buf, from, to);
+            mantissa = mantissa * 10 + d;
+            digits++;
+            if (scale >= 0) scale++;
+        }
+        if (digits == 0) return Double.NaN;
+        if (mantissa >= 1L << 53) return parseDecimalSlow(buf, from, to);
+        // mantissa and 10^scale are both exact doubles, so the one division rounds correctly
+        double v = scale > 0 ? mantissa / POW10[scale] : mantissa;
+        return negative ? -v : v;
+    }
+
+    // Fallback for exponents or very long numbers (rare; allocates)
+    private static double parseDecimalSlow(ByteBuffer buf, int from, int to) {
+        byte[] b = new byte[to - from];
+        copyBytes(buf, from, b, 0, b.length);
+        try {
+            return Double.parseDouble(new String(b, StandardCharsets.US_ASCII).trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    // Calendar month of an epoch day, as year * 12 + (month - 1)
+    static int monthOfEpochDay(long epochDay) {
+        long z = epochDay + 719_468;
+        long era = (z >= 0 ? z : z - 146_096) / 146_097;
+        long doe = z - era * 146_097;
+        long yoe = (doe - doe / 1460 + doe / 36_524 - doe / 146_096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) (year * 12 + month - 1);
+    }
+
+    // Per-thread dictionary from field bytes to dense int codes; bytes are copied only for new values
+    static class ByteDictionary {
+        byte[] arena = new byte[1024];
+        int arenaUsed;
+        int[] starts = new int[64], lengths = new int[64];
+        int size;
+        int[] table = new int[128]; // code + 1, open addressing
+
+        int code(ByteBuffer buf, int from, int to) {
+            int len = to - from;
+            int h = 0;
+            for (int i = from; i < to; i++) h = 31 * h + buf.get(i);
+            int mask = table.length - 1;
+            for (int slot = mix(h) & mask; ; slot = (slot + 1) & mask) {
+                int c = table[slot] - 1;
+                if (c < 0) return insert(buf, from, len, slot);
+                if (lengths[c] == len && equalBytes(c, buf, from)) return c;
+            }
+        }
+
+        private boolean equalBytes(int c, ByteBuffer buf, int from) {
+            int s = starts[c];
+            for (int i = 0; i < lengths[c]; i++) {
+                if (arena[s + i] != buf.get(from + i)) return false;
+            }
+            return true;
+        }
+
+        private int insert(ByteBuffer buf, int from, int len, int slot) {
+            if (arenaUsed + len > arena.length) arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaUsed + len));
+            copyBytes(buf, from, arena, arenaUsed, len);
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+            starts[size] = arenaUsed;
+            lengths[size] = len;
+            arenaUsed += len;
+            table[slot] = size + 1;
+            int c = size++;
+            if (size * 2 > table.length) rehash();
+            return c;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int c = 0; c < size; c++) {
+                int h = 0;
+                for (int i = 0; i < lengths[c]; i++) h = 31 * h + arena[starts[c] + i];
+                int slot = mix(h) & mask;
+                while (table[slot] != 0) slot = (slot + 1) & mask;
+                table[slot] = c + 1;
+            }
+        }
+
+        String label(int c) {
+            return new String(arena, starts[c], lengths[c], StandardCharsets.UTF_8);
+        }
+    }
+
+    static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Per-thread group-by state: dictionary-encoded key tuples -> primitive sum/count accumulators
+    static class GroupAccumulator implements RowVisitor {
+        final int[] dims;
+        final int valueColumn, maxColumn;
+        final ByteDictionary[] dicts;
+        final int[] codes, fieldStarts, fieldEnds;
+
+        int[] groupCodes;               // groups * dims codes
+        double[] sums = new double[64];
+        long[] values = new long[64], rows = new long[64];
+        int groups;
+        int[] table = new int[128];     // group id + 1, open addressing
+
+        GroupAccumulator(int[] dims, int valueColumn) {
+            this.dims = dims;
+            this.valueColumn = valueColumn;
+            int max = valueColumn;
+            for (int d : dims) max = Math.max(max, d);
+            this.maxColumn = max;
+            this.dicts = new ByteDictionary[dims.length];
+            for (int d = 0; d < dims.length; d++) if (dims[d] >= 0) dicts[d] = new ByteDictionary();
+            this.codes = new int[dims.length];
+            this.fieldStarts = new int[max + 1];
+            this.fieldEnds = new int[max + 1];
+            this.groupCodes = new int[64 * Math.max(1, dims.length)];
+        }
+
+        @Override
+        public void row(ByteBuffer buf, int start, int end, int tsStart, int tsEnd) {
+            int found = splitFields(buf, start, end, fieldStarts, fieldEnds, maxColumn);
+            long epochDay = 0;
+            boolean haveDay = false;
+            for (int d = 0; d < dims.length; d++) {
+                int dim = dims[d];
+                if (dim >= 0) {
+                    codes[d] = dim < found ? dicts[d].code(buf, fieldStarts[dim], fieldEnds[dim]) : dicts[d].code(buf, start, start);
+                } else {
+                    if (!haveDay) {
+                        long ts = tsStart < 0 ? 0 : parseTimestamp(buf, tsStart, tsEnd - tsStart);
+                        epochDay = Math.floorDiv(ts, 86_400_000L);
+                        haveDay = true;
+                    }
+                    codes[d] = dim == BY_DAY ? (int) epochDay : monthOfEpochDay(epochDay);
+                }
+            }
+            int g = group();
+            rows[g]++;
+            if (valueColumn < found) {
+                double v = parseDecimal(buf, fieldStarts[valueColumn], fieldEnds[valueColumn]);
+                if (!Double.isNaN(v)) {
+                    sums[g] += v;
+                    values[g]++;
+                }
+            }
+        }
+
+        private int hashCodes(int[] c, int base) {
+            int h = 1;
+            for (int d = 0; d < dims.length; d++) h = 31 * h + c[base + d];
+            return mix(h);
+        }
+
+        private int group() {
+            int n = dims.length;
+            int mask = table.length - 1;
+            for (int slot = hashCodes(codes, 0) & mask; ; slot = (slot + 1) & mask) {
+                int g = table[slot] - 1;
+                if (g < 0) return newGroup(slot);
+                boolean same = true;
+                for (int d = 0; d < n && same; d++) same = groupCodes[g * n + d] == codes[d];
+                if (same) return g;
+            }
+        }
+
+        private int newGroup(int slot) {
+            int n = dims.length;
+            if (groups == sums.length) {
+                int cap = groups * 2;
+                sums = Arrays.copyOf(sums, cap);
+                values = Arrays.copyOf(values, cap);
+                rows = Arrays.copyOf(rows, cap);
+                groupCodes = Arrays.copyOf(groupCodes, cap * Math.max(1, n));
+            }
+            System.arraycopy(codes, 0, groupCodes, groups * n, n);
+            table[slot] = groups + 1;
+            int g = groups++;
+            if (groups * 2 > table.length) {
+                table = new int[table.length * 2];
+                int mask = table.length - 1;
+                for (int i = 0; i < groups; i++) {
+                    int s = hashCodes(groupCodes, i * n) & mask;
+                    while (table[s] != 0) s = (s + 1) & mask;
+                    table[s] = i + 1;
+                }
+            }
+            return g;
+        }
+
+        String label(int d, int code) {
+            if (dims[d] >= 0) return dicts[d].label(code);
+            if (dims[d] == BY_DAY) return LocalDate.ofEpochDay(code).toString();
+            return String.format("%04d-%02d", Math.floorDiv(code, 12), Math.floorMod(code, 12) + 1);
+        }
+    }
+
+    // Sum / count / average of `valueColumn` grouped by `dims` (column numbers, BY_DAY or BY_MONTH).
+    // Each chunk is aggregated into its own primitive accumulator; partial results are merged by key
+    // label at the end. Groups come back sorted by key.
+    public static List<AggregateRow> aggregate(Path file, int[] dims, int valueColumn, int threads) throws IOException {
+        List<GroupAccumulator> parts = mapChunks(file, threads, (ch, from, to) -> {
+            GroupAccumulator acc = new GroupAccumulator(dims, valueColumn);
+            forEachRow(mapChunk(ch, from, to), acc);
+            return acc;
+        });
+
+        Map<String, AggregateRow> merged = new TreeMap<>();
+        for (GroupAccumulator acc : parts) {
+            for (int g = 0; g < acc.groups; g++) {
+                String[] key = new String[dims.length];
+                for (int d = 0; d < dims.length; d++) key[d] = acc.label(d, acc.groupCodes[g * dims.length + d]);
+                AggregateRow row = merged.computeIfAbsent(String.join("\u0000", key), x -> new AggregateRow(key));
+                row.rows += acc.rows[g];
+                row.values += acc.values[g];
+                row.sum += acc.sums[g];
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    // Aggregate mode for main: aggregate [csv] [column|day|month ...] [sum=column]
+    static void runAggregate(Path file, String[] params, int threads) throws IOException {
+        String header;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            header = readRow(ch, 0);
+        }
+        List<Integer> dimList = new ArrayList<>();
+        int valueColumn = SPENDING_COLUMN;
+        for (String p : params) {
+            if (p.equalsIgnoreCase("day")) dimList.add(BY_DAY);
+            else if (p.equalsIgnoreCase("month")) dimList.add(BY_MONTH);
+            else if (p.startsWith("sum=")) valueColumn = columnIndex(header, p.substring(4));
+            else dimList.add(columnIndex(header, p));
+        }
+        int[] dims = new int[dimList.size()];
+        for (int i = 0; i < dims.length; i++) dims[i] = dimList.get(i);
+
+        long startTime = System.currentTimeMillis();
+        List<AggregateRow> groups = aggregate(file, dims, valueColumn, threads);
+        long endTime = System.currentTimeMillis();
+        System.out.println(groups.size() + " groups aggregated in " + (endTime - startTime) + " ms");
+        for (AggregateRow g : groups) {
+            System.out.printf("%-40s rows=%-8d total=%.2f avg=%.2f%n", String.join(" | ", g.key), g.rows, g.sum, g.average());
+        }
+    }
+
+    // Original Scanner + split + DateTimeFormatter loader (capped at 1M rows)
+    static Order[] loadWithScanner(String path) throws FileNotFoundException {
+        Scanner sc = new Scanner(new File(path));
+
+        // Skip header
+        String header = sc.nextLine();
+
+        Order[] orders = new Order[1_000_000];
+        int index = 0;
+
+        // Read rows
+        while (sc.hasNextLine() && index < orders.length) {
+            String line = sc.nextLine();
+            String[] parts = line.split(",", -1);
+            String timestampStr = parts[1]; // Timestamp in 2nd column
+            long timestamp = parseTimestamp(timestampStr);
+
+            orders[index++] = new Order(timestamp, line);
+        }
+        sc.close();
+        return Arrays.copyOf(orders, index);
+    }
+
+    static void printUsage() {
+        System.out.println("Usage: java MergeSortWithScanner [scanner|mapped|parallel|columnar|columnar-merge] [csv path]");
+        System.out.println("       java MergeSortWithScanner external [csv path] [output csv] [memory budget MB]");
+        System.out.println("       java MergeSortWithScanner index|range|first|last [csv path] [from to | n]");
+        System.out.println("       java MergeSortWithScanner top [csv path] [k] [earliest|latest] [column=value ...]");
+        System.out.println("       java MergeSortWithScanner aggregate [csv path] [column|day|month ...] [sum=column]");
+    }
+
+    // Usage: java MergeSortWithScanner [scanner|mapped|parallel|columnar|columnar-merge] [csv path]
+    //        java MergeSortWithScanner external [csv path] [output csv] [memory budget MB]
+    //        java MergeSortWithScanner index|range|first|last [csv path] [from to | n]
+    //        java MergeSortWithScanner top [csv path] [k] [earliest|latest] [column=value ...]
+    //        java MergeSortWithScanner aggregate [csv path] [column|day|month ...] [sum=column]
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "scanner";
+        String path = args.length > 1 ? args[1] : CSV_FILE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            if (!Arrays.asList("scanner", "mapped", "parallel", "columnar", "columnar-merge", "external",
+                    "index", "range", "first", "last", "top", "aggregate").contains(mode)) {
+                System.out.println("Unknown mode: " + mode);
+                return;
+            }
+            if (mode.equals("aggregate")) {
+                runAggregate(Paths.get(path), Arrays.copyOfRange(args, Math.min(2, args.length), args.length), threads);
+                return;
+            }
+            if (mode.equals("top")) {
+                runTopK(Paths.get(path), Arrays.copyOfRange(args, Math.min(2, args.length), args.length), threads);
+                return;
+            }
+            if (Arrays.asList("index", "range", "first", "last").contains(mode)) {
+                runIndexQuery(mode, Paths.get(path), Arrays.copyOfRange(args, Math.min(2, args.length), args.length), threads);
+                return;
+            }
+            if (mode.equals("external")) {
+                Path out = Paths.get(args.length > 2 ? args[2] : "sorted_orders.csv");
+                long budgetMb = args.length > 3 ? Long.parseLong(args[3]) : 512;
+                runExternal(Paths.get(path), out, budgetMb << 20, 10);
+                return;
+            }
+            if (mode.startsWith("columnar")) {
+                runColumnar(Paths.get(path), threads, !mode.equals("columnar-merge"), 10);
+                return;
+            }
+
+            long loadStart = System.currentTimeMillis();
+            Order[] orders = mode.equals("scanner") ? loadWithScanner(path) : ingestOrders(Paths.get(path), threads);
+            int index = orders.length;
+            System.out.println("Loaded " + index + " rows (" + mode + ") in " + (System.currentTimeMillis() - loadStart) + " ms");
 
-            System.out.println("Sorting " + index + " records using Merge Sort...");
+            boolean parallel = mode.equals("parallel");
+            System.out.println("Sorting " + index + " records using " + (parallel ? "Parallel Merge Sort" : "Merge Sort") + "...");
 
             long startTime = System.currentTimeMillis();
-            mergeSort(orders, 0, index - 1);
+            if (parallel) parallelMergeSort(orders, 0, index - 1);
+            else mergeSort(orders, 0, index - 1);
             long endTime = System.currentTimeMillis();
 
             System.out.println("Sorting completed in " + (endTime - startTime) + " ms");
             System.out.println("First 10 sorted results:");
 
-            for (int i = 0; i < 10; i++) {
+            for (int i = 0; i < Math.min(10, index); i++) {
                 System.out.println(orders[i].rowData);
             }
 
-        } catch (FileNotFoundException e) {
+        } catch (FileNotFoundException | NoSuchFileException e) {
             System.out.println("File not found! Please check file path!");
+        } catch (IOException e) {
+            System.out.println("Error reading file: " + e.getMessage());
+        } catch (IllegalArgumentException e) { // bad arguments, including NumberFormatException
+            System.out.println(e.getMessage());
+            printUsage();
         }
     }
 }
@@ -1,200 +1,1700 @@
-//Name : Siddharth Kakade
-//PRN : 123B1F040
-//Date : 21-7-25
-import java.io.*;
-import java.util.*;
-
-class Movie {
-    String name;
-    double imdbRating;
-    int releaseYear;
-    int popularity; // watch time popularity or simulated popularity
-
-    // Constructor
-    public Movie(String name, double imdbRating, int releaseYear, int popularity) {
-        this.name = name;
-        this.imdbRating = imdbRating;
-        this.releaseYear = releaseYear;
-        this.popularity = popularity;
-    }
-
-    @Override
-    public String toString() {
-        return String.format("%-45s | Rating: %.1f | Year: %d | Popularity: %d",
-                name, imdbRating, releaseYear, popularity);
-    }
-}
-
-class MovieRecommendationSystem {
-
-    // quickSort algorithm
-    public static void quickSort(List<Movie> movies, int low, int high, String parameter) {
-        if (low < high) {
-            int pi = partition(movies, low, high, parameter);
-            quickSort(movies, low, pi - 1, parameter);
-            quickSort(movies, pi + 1, high, parameter);
-        }
-    }
-    private static int partition(List<Movie> movies, int low, int high, String parameter) {
-        Movie pivot = movies.get(high);
-        int i = low - 1;
-
-        for (int j = low; j < high; j++) {
-            if (compare(movies.get(j), pivot, parameter)) {
-                i++;
-                Collections.swap(movies, i, j);
-            }
-        }
-        Collections.swap(movies, i + 1, high);
-        return i + 1;
-    }
-
-    private static boolean compare(Movie m1, Movie m2, String parameter) {
-        switch (parameter.toLowerCase()) {
-            case "rating":
-                return m1.imdbRating > m2.imdbRating;
-            case "year":
-                return m1.releaseYear > m2.releaseYear;
-            case "popularity":
-                return m1.popularity > m2.popularity;
-            default:
-                return false;
-        }
-    }
-    // CSV Reader
-    public static List<Movie> loadMovies(String filePath) {
-        List<Movie> movies = new ArrayList<>();
-        String line;
-
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            br.readLine(); // skip header
-            while ((line = br.readLine()) != null) {
-                // Properly handle CSV with quoted commas
-                String[] values = line.split(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)");
-                try {
-                    String name = values[1].replace("\"", "");
-                    int year = Integer.parseInt(values[2].replaceAll("[^0-9]", ""));
-                    double rating = Double.parseDouble(values[6]);
-                    int popularity = Integer.parseInt(values[14].replaceAll("[^0-9]", "")); // No_of_Votes
-
-                    movies.add(new Movie(name, rating, year, popularity));
-                } catch (Exception e) {
-                    // Skip bad rows
-                }
-            }
-        } catch (IOException e) {
-            System.out.println("Error reading file: " + e.getMessage());
-        }
-        return movies;
-    }
-    public static void main(String[] args) {
-        Scanner sc = new Scanner(System.in);
-        // Load dataset
-        System.out.println("Loading movie dataset");
-        List<Movie> movies = loadMovies("imdb_top_1000.csv");
-        System.out.println("Total movies loaded: " + movies.size());
-        // Get user input
-        System.out.println("\nChoose sorting parameter:");
-        System.out.println("1. rating");
-        System.out.println("2. year");
-        System.out.println("3. popularity");
-        System.out.print("Enter your choice: ");
-        String choice = sc.nextLine().trim().toLowerCase();
-
-        // Validate input
-        if (!(choice.equals("rating") || choice.equals("year") || choice.equals("popularity"))) {
-            System.out.println("Invalid choice. Defaulting to rating.");
-            choice = "rating";
-        }
-        // Sort using QuickSort
-        long start = System.currentTimeMillis();
-        quickSort(movies, 0, movies.size() - 1, choice);
-        long end = System.currentTimeMillis();
-        // Display top 10 recommended movies
-        System.out.println("\nTop 10 Recommended Movies (sorted by " + choice + "):\n");
-        for (int i = 0; i < Math.min(10, movies.size()); i++) {
-            System.out.println(movies.get(i));
-        }
-
-        System.out.println("\nSorting completed in " + (end - start) + " ms.");
-        sc.close();
-    }
-}
-
-// OUTPUT
-// PS C:\Users\HP\Downloads\DAA-main\DAA-main>  & 'C:\Program Files\Java\jre1.8.0_431\bin\java.exe' '-cp' 'C:\Users\HP\AppData\Roaming\Code\User\workspaceStorage\17c632c3906fbc7c024e18e064267554\redhat.java\jdt_ws\DAA-main_14177a63\bin' 'MovieRecommendationSystem' 
-// Loading movie dataset
-// Total movies loaded: 999
-
-// Choose sorting parameter:
-// 1. rating
-// 2. year
-// 3. popularity
-// Enter your choice: 1
-// Invalid choice. Defaulting to rating.
-
-// Top 10 Recommended Movies (sorted by rating):
-
-// The Shawshank Redemption                      | Rating: 9.3 | Year: 1994 | Popularity: 2343110
-// The Godfather                                 | Rating: 9.2 | Year: 1972 | Popularity: 1620367
-// 12 Angry Men                                  | Rating: 9.0 | Year: 1957 | Popularity: 689845
-// The Dark Knight                               | Rating: 9.0 | Year: 2008 | Popularity: 2303232
-// The Godfather: Part II                        | Rating: 9.0 | Year: 1974 | Popularity: 1129952
-// Schindler's List                              | Rating: 8.9 | Year: 1993 | Popularity: 1213505
-// The Lord of the Rings: The Return of the King | Rating: 8.9 | Year: 2003 | Popularity: 1642758
-// Pulp Fiction                                  | Rating: 8.9 | Year: 1994 | Popularity: 1826188
-// Il buono, il brutto, il cattivo               | Rating: 8.8 | Year: 1966 | Popularity: 688390
-// Inception                                     | Rating: 8.8 | Year: 2010 | Popularity: 2067042
-
-// Sorting completed in 7 ms.
-// PS C:\Users\HP\Downloads\DAA-main\DAA-main>  c:; cd 'c:\Users\HP\Downloads\DAA-main\DAA-main'; & 'C:\Program Files\Java\jre1.8.0_431\bin\java.exe' '-cp' 'C:\Users\HP\AppData\Roaming\Code\User\workspaceStorage\17c632c3906fbc7c024e18e064267554\redhat.java\jdt_ws\DAA-main_14177a63\bin' 'MovieRecommendationSystem' 
-// Loading movie dataset
-// Total movies loaded: 999
-
-// Choose sorting parameter:
-// 1. rating
-// 2. year
-// 3. popularity
-// Enter your choice: 2
-// Invalid choice. Defaulting to rating.
-
-// Top 10 Recommended Movies (sorted by rating):
-
-// The Shawshank Redemption                      | Rating: 9.3 | Year: 1994 | Popularity: 2343110
-// The Godfather                                 | Rating: 9.2 | Year: 1972 | Popularity: 1620367
-// 12 Angry Men                                  | Rating: 9.0 | Year: 1957 | Popularity: 689845
-// The Dark Knight                               | Rating: 9.0 | Year: 2008 | Popularity: 2303232
-// The Godfather: Part II                        | Rating: 9.0 | Year: 1974 | Popularity: 1129952
-// Schindler's List                              | Rating: 8.9 | Year: 1993 | Popularity: 1213505
-// The Lord of the Rings: The Return of the King | Rating: 8.9 | Year: 2003 | Popularity: 1642758
-// Pulp Fiction                                  | Rating: 8.9 | Year: 1994 | Popularity: 1826188
-// Il buono, il brutto, il cattivo               | Rating: 8.8 | Year: 1966 | Popularity: 688390
-// Inception                                     | Rating: 8.8 | Year: 2010 | Popularity: 2067042
-
-// Sorting completed in 0 ms.
-// PS C:\Users\HP\Downloads\DAA-main\DAA-main>  c:; cd 'c:\Users\HP\Downloads\DAA-main\DAA-main'; & 'C:\Program Files\Java\jre1.8.0_431\bin\java.exe' '-cp' 'C:\Users\HP\AppData\Roaming\Code\User\workspaceStorage\17c632c3906fbc7c024e18e064267554\redhat.java\jdt_ws\DAA-main_14177a63\bin' 'MovieRecommendationSystem'
-// Loading movie dataset
-// Total movies loaded: 999
-
-// Choose sorting parameter:
-// 1. rating
-// 2. year
-// 3. popularity
-// Enter your choice: 3
-// Invalid choice. Defaulting to rating.
-
-// Top 10 Recommended Movies (sorted by rating):
-
-// The Shawshank Redemption                      | Rating: 9.3 | Year: 1994 | Popularity: 2343110
-// The Godfather                                 | Rating: 9.2 | Year: 1972 | Popularity: 1620367
-// 12 Angry Men                                  | Rating: 9.0 | Year: 1957 | Popularity: 689845
-// The Dark Knight                               | Rating: 9.0 | Year: 2008 | Popularity: 2303232
-// The Godfather: Part II                        | Rating: 9.0 | Year: 1974 | Popularity: 1129952
-// Schindler's List                              | Rating: 8.9 | Year: 1993 | Popularity: 1213505
-// The Lord of the Rings: The Return of the King | Rating: 8.9 | Year: 2003 | Popularity: 1642758
-// Pulp Fiction                                  | Rating: 8.9 | Year: 1994 | Popularity: 1826188
-// Il buono, il brutto, il cattivo               | Rating: 8.8 | Year: 1966 | Popularity: 688390
-// Inception                                     | Rating: 8.8 | Year: 2010 | Popularity: 2067042
-
-// Sorting completed in 6 ms.
-
+//Name : Siddharth Kakade
+//PRN : 123B1F040
+//Date : 21-7-25
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+class Movie {
+    String name;
+    double imdbRating;
+    int releaseYear;
+    int popularity; // watch time popularity or simulated popularity
+    int runtime;                    // minutes
+    double metaScore = Double.NaN;  // NaN when the CSV has no value
+    double gross = Double.NaN;      // NaN when the CSV has no value
+    String director = "";
+    String[] stars = new String[0];
+    String[] genres = new String[0];
+
+    // Constructor
+    public Movie(String name, double imdbRating, int releaseYear, int popularity) {
+        this.name = name;
+        this.imdbRating = imdbRating;
+        this.releaseYear = releaseYear;
+        this.popularity = popularity;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-45s | Rating: %.1f | Year: %d | Popularity: %d",
+                name, imdbRating, releaseYear, popularity);
+    }
+}
+
+// Numeric movie columns that can be used as sort keys
+enum MovieField {
+    RATING, YEAR, POPULARITY, RUNTIME, METASCORE, GROSS;
+
+    double of(Movie m) {
+        switch (this) {
+            case RATING: return m.imdbRating;
+            case YEAR: return m.releaseYear;
+            case POPULARITY: return m.popularity;
+            case RUNTIME: return m.runtime;
+            case METASCORE: return m.metaScore;
+            default: return m.gross;
+        }
+    }
+
+    static MovieField parse(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "rating": return RATING;
+            case "year": return YEAR;
+            case "popularity":
+            case "votes": return POPULARITY;
+            case "runtime": return RUNTIME;
+            case "metascore":
+            case "meta_score": return METASCORE;
+            case "gross": return GROSS;
+            default: throw new IllegalArgumentException("Unknown movie field: " + name);
+        }
+    }
+}
+
+// A precompiled sort key: a column plus a direction. Missing values (NaN) sort last either way.
+class SortKey {
+    final MovieField field;
+    final boolean descending;
+
+    SortKey(MovieField field, boolean descending) {
+        this.field = field;
+        this.descending = descending;
+    }
+
+    // "rating desc, votes desc" -> two keys; the direction defaults to descending (best first)
+    static SortKey[] parse(String spec) {
+        String[] parts = spec.split(",");
+        SortKey[] keys = new SortKey[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String[] words = parts[i].trim().split("\\s+");
+            boolean desc = words.length < 2 || !words[1].equalsIgnoreCase("asc");
+            keys[i] = new SortKey(MovieField.parse(words[0]), desc);
+        }
+        return keys;
+    }
+
+    // Exactly one key, for the indexed top-K queries, which order by a single column
+    static SortKey parseSingle(String spec) {
+        SortKey[] keys = parse(spec);
+        if (keys.length != 1) throw new IllegalArgumentException("Top-K queries take one sort key, got " + keys.length + ": " + spec);
+        return keys[0];
+    }
+
+    // The key column for all movies, normalized so that ascending order is the wanted order
+    double[] extract(List<Movie> movies) {
+        double[] col = new double[movies.size()];
+        for (int i = 0; i < col.length; i++) {
+            double v = field.of(movies.get(i));
+            col[i] = Double.isNaN(v) ? Double.POSITIVE_INFINITY : (descending ? -v : v);
+        }
+        return col;
+    }
+
+    @Override
+    public String toString() {
+        return field.name().toLowerCase() + (descending ? " desc" : " asc");
+    }
+}
+
+// Range filter min <= field <= max on one numeric column; movies missing the value never match
+class RangeFilter {
+    final MovieField field;
+    final double min, max;
+
+    RangeFilter(MovieField field, double min, double max) {
+        this.field = field;
+        this.min = min;
+        this.max = max;
+    }
+
+    // "rating>=8", "year<=2000", "year=1990..2000" or "year=1994"
+    static RangeFilter parse(String spec) {
+        String s = spec.replace(" ", "");
+        int op = s.indexOf(">=") >= 0 ? s.indexOf(">=") : s.indexOf("<=") >= 0 ? s.indexOf("<=") : s.indexOf('=');
+        if (op <= 0) throw new IllegalArgumentException("Bad filter: " + spec);
+        MovieField field = MovieField.parse(s.substring(0, op));
+        if (s.startsWith(">=", op)) return new RangeFilter(field, Double.parseDouble(s.substring(op + 2)), Double.POSITIVE_INFINITY);
+        if (s.startsWith("<=", op)) return new RangeFilter(field, Double.NEGATIVE_INFINITY, Double.parseDouble(s.substring(op + 2)));
+        String value = s.substring(op + 1);
+        int dots = value.indexOf("..");
+        if (dots < 0) return new RangeFilter(field, Double.parseDouble(value), Double.parseDouble(value));
+        return new RangeFilter(field, Double.parseDouble(value.substring(0, dots)), Double.parseDouble(value.substring(dots + 2)));
+    }
+
+    boolean test(Movie m) {
+        double v = field.of(m);
+        return v >= min && v <= max; // false for NaN
+    }
+
+    @Override
+    public String toString() {
+        return field.name().toLowerCase() + " in [" + min + ", " + max + "]";
+    }
+}
+
+// In-memory catalogue with a sorted secondary index per numeric field, built once and kept up to
+// date on add/remove. Top-K queries walk the order-by index (or scan the most selective filter's
+// index range) instead of sorting. Not thread-safe; share it read-only or guard writes externally.
+class MovieCatalogue {
+    // Sorted (key asc, id asc) entries for one field; movies with no value are kept aside
+    static class FieldIndex {
+        double[] keys = new double[16];
+        int[] ids = new int[16];
+        int size;
+        final BitSet missing = new BitSet();
+
+        // First position whose (key, id) is >= (key, id)
+        int position(double key, int id) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid] < key || (keys[mid] == key && ids[mid] < id)) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        // First position with key >= value (strict = false) or key > value (strict = true)
+        int bound(double value, boolean strict) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid] < value || (strict && keys[mid] == value)) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        void insert(double key, int id) {
+            if (Double.isNaN(key)) { missing.set(id); return; }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            int at = position(key, id);
+            System.arraycopy(keys, at, keys, at + 1, size - at);
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            keys[at] = key;
+            ids[at] = id;
+            size++;
+        }
+
+        void remove(double key, int id) {
+            if (Double.isNaN(key)) { missing.clear(id); return; }
+            int at = position(key, id);
+            if (at == size || ids[at] != id) throw new IllegalStateException("Index out of sync for movie id " + id);
+            System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+        }
+    }
+
+    private final List<Movie> byId = new ArrayList<>();            // id -> movie, null once removed
+    private final Map<Movie, Integer> ids = new IdentityHashMap<>();
+    private final FieldIndex[] indexes = new FieldIndex[MovieField.values().length];
+
+    MovieCatalogue(List<Movie> movies) {
+        for (MovieField f : MovieField.values()) indexes[f.ordinal()] = new FieldIndex();
+        byId.addAll(movies);
+        for (int id = 0; id < movies.size(); id++) ids.put(movies.get(id), id);
+        // bulk build: one sort per field instead of n sorted inserts
+        for (MovieField f : MovieField.values()) {
+            FieldIndex idx = indexes[f.ordinal()];
+            int[] order = MovieRecommendationSystem.sortedOrder(movies, new SortKey(f, false));
+            idx.keys = new double[Math.max(16, order.length)];
+            idx.ids = new int[Math.max(16, order.length)];
+            for (int id : order) {
+                double v = f.of(movies.get(id));
+                if (Double.isNaN(v)) { idx.missing.set(id); continue; }
+                idx.keys[idx.size] = v;
+                idx.ids[idx.size++] = id;
+            }
+        }
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    List<Movie> movies() {
+        List<Movie> out = new ArrayList<>(ids.size());
+        for (Movie m : byId) if (m != null) out.add(m);
+        return out;
+    }
+
+    void add(Movie m) {
+        if (ids.containsKey(m)) return;
+        int id = byId.size();
+        byId.add(m);
+        ids.put(m, id);
+        for (MovieField f : MovieField.values()) indexes[f.ordinal()].insert(f.of(m), id);
+    }
+
+    // Field values must not have changed since add (remove, edit, then add again to update a movie)
+    boolean remove(Movie m) {
+        Integer id = ids.remove(m);
+        if (id == null) return false;
+        for (MovieField f : MovieField.values()) indexes[f.ordinal()].remove(f.of(m), id);
+        byId.set(id, null);
+        return true;
+    }
+
+    // Top k movies by `orderBy` among those matching every filter (ties keep catalogue order,
+    // missing order-by values come last, like sortBy). Picks the cheaper of two plans:
+    //  - walk the order-by index from the best end, checking filters, until k movies match;
+    //  - take the most selective filter's index range and keep the best k with a bounded heap.
+    List<Movie> topK(SortKey orderBy, int k, RangeFilter... filters) {
+        if (k <= 0) return new ArrayList<>();
+        int n = Math.max(1, size());
+        double expected = n;              // matches expected if filters are independent
+        int bestFilter = -1, bestLo = 0, bestHi = n;
+        for (int f = 0; f < filters.length; f++) {
+            FieldIndex idx = indexes[filters[f].field.ordinal()];
+            int lo = idx.bound(filters[f].min, false), hi = idx.bound(filters[f].max, true);
+            int count = Math.max(0, hi - lo);
+            expected *= (double) count / n;
+            if (bestFilter < 0 || count < bestHi - bestLo) {
+                bestFilter = f;
+                bestLo = lo;
+                bestHi = Math.max(lo, hi);
+            }
+        }
+        if (bestFilter >= 0 && bestHi == bestLo) return new ArrayList<>();
+
+        double walkCost = expected < 1 ? n : Math.min(n, k * (n / expected));
+        if (bestFilter < 0 || walkCost <= bestHi - bestLo) return walk(orderBy, k, filters);
+        return scan(indexes[filters[bestFilter].field.ordinal()], bestLo, bestHi, orderBy, k, filters);
+    }
+
+    private List<Movie> walk(SortKey orderBy, int k, RangeFilter[] filters) {
+        FieldIndex idx = indexes[orderBy.field.ordinal()];
+        List<Movie> out = new ArrayList<>();
+        if (orderBy.descending) {
+            // index ties are in id order, so walk each run of equal keys forwards
+            for (int i = idx.size - 1; i >= 0 && out.size() < k; ) {
+                int runStart = i;
+                while (runStart > 0 && idx.keys[runStart - 1] == idx.keys[i]) runStart--;
+                for (int j = runStart; j <= i && out.size() < k; j++) collect(idx.ids[j], filters, out);
+                i = runStart - 1;
+            }
+        } else {
+            for (int i = 0; i < idx.size && out.size() < k; i++) collect(idx.ids[i], filters, out);
+        }
+        for (int id = idx.missing.nextSetBit(0); id >= 0 && out.size() < k; id = idx.missing.nextSetBit(id + 1)) {
+            collect(id, filters, out);
+        }
+        return out;
+    }
+
+    private void collect(int id, RangeFilter[] filters, List<Movie> out) {
+        Movie m = byId.get(id);
+        for (RangeFilter f : filters) if (!f.test(m)) return;
+        out.add(m);
+    }
+
+    private List<Movie> scan(FieldIndex idx, int lo, int hi, SortKey orderBy, int k, RangeFilter[] filters) {
+        // bounded max-heap on (normalized key, id): the root is the worst of the current best k,
+        // sized by the rows in range rather than by the caller's k
+        int cap = Math.min(k, hi - lo);
+        double[] hk = new double[cap];
+        int[] hid = new int[cap];
+        int size = 0;
+        for (int i = lo; i < hi; i++) {
+            int id = idx.ids[i];
+            Movie m = byId.get(id);
+            boolean ok = true;
+            for (RangeFilter f : filters) if (!(ok = f.test(m))) break;
+            if (!ok) continue;
+            double v = orderBy.field.of(m);
+            double key = Double.isNaN(v) ? Double.POSITIVE_INFINITY : (orderBy.descending ? -v : v);
+            if (size < cap) {
+                hk[size] = key;
+                hid[size] = id;
+                for (int c = size++; c > 0 && worse(hk, hid, c, (c - 1) / 2); c = (c - 1) / 2) swap(hk, hid, c, (c - 1) / 2);
+            } else if (cap > 0 && worse(hk[0], hid[0], key, id)) {
+                hk[0] = key;
+                hid[0] = id;
+                siftDown(hk, hid, size);
+            }
+        }
+        // pop the worst each time, filling the result from the back
+        Movie[] out = new Movie[size];
+        for (int n = size; n > 0; n--) {
+            out[n - 1] = byId.get(hid[0]);
+            hk[0] = hk[n - 1];
+            hid[0] = hid[n - 1];
+            siftDown(hk, hid, n - 1);
+        }
+        return new ArrayList<>(Arrays.asList(out));
+    }
+
+    private static void siftDown(double[] hk, int[] hid, int size) {
+        for (int c = 0; ; ) {
+            int l = 2 * c + 1, r = l + 1, w = c;
+            if (l < size && worse(hk, hid, l, w)) w = l;
+            if (r < size && worse(hk, hid, r, w)) w = r;
+            if (w == c) return;
+            swap(hk, hid, c, w);
+            c = w;
+        }
+    }
+
+    private static boolean worse(double k1, int id1, double k2, int id2) {
+        return k1 > k2 || (k1 == k2 && id1 > id2);
+    }
+
+    private static boolean worse(double[] hk, int[] hid, int a, int b) {
+        return worse(hk[a], hid[a], hk[b], hid[b]);
+    }
+
+    private static void swap(double[] hk, int[] hid, int a, int b) {
+        double t = hk[a]; hk[a] = hk[b]; hk[b] = t;
+        int ti = hid[a]; hid[a] = hid[b]; hid[b] = ti;
+    }
+}
+
+// Search-as-you-type over title, director and star names.
+// Movies get ids by popularity rank (0 = most votes), so every postings list is already in
+// popularity order and its top-K is just its first K entries. Terms live in one sorted array, which
+// makes all terms with a given prefix a contiguous id range. A character trie over the terms stores
+// each node's top-K ids, so a one-word prefix costs a walk of |prefix| nodes and a copy.
+// Immutable after construction; safe to share between threads.
+class MovieSearchIndex {
+    static final int NODE_TOP_K = 10;
+
+    private final Movie[] byRank;
+    private final String[] terms;
+    private final int[][] postings;  // term id -> ascending rank ids
+    private final int[][] docTerms;  // rank id -> ascending term ids
+
+    // Trie as flat arrays (first-child / next-sibling); node 0 is the root
+    private final char[] label;
+    private final int[] firstChild, nextSibling;
+    private final int[] topStart;    // node's top-K is topPool[topStart[node] .. topStart[node + 1])
+    private final int[] topPool;
+
+    MovieSearchIndex(List<Movie> movies) {
+        byRank = movies.toArray(new Movie[0]);
+        Arrays.sort(byRank, (a, b) -> Integer.compare(b.popularity, a.popularity)); // stable
+
+        TreeMap<String, List<Integer>> byTerm = new TreeMap<>();
+        List<TreeSet<String>> tokens = new ArrayList<>();
+        for (int r = 0; r < byRank.length; r++) {
+            TreeSet<String> own = new TreeSet<>();
+            Movie m = byRank[r];
+            own.addAll(tokenize(m.name));
+            own.addAll(tokenize(m.director));
+            for (String star : m.stars) own.addAll(tokenize(star));
+            for (String t : own) byTerm.computeIfAbsent(t, x -> new ArrayList<>()).add(r);
+            tokens.add(own);
+        }
+
+        terms = byTerm.keySet().toArray(new String[0]);
+        postings = new int[terms.length][];
+        Map<String, Integer> termId = new HashMap<>();
+        int chars = 0;
+        for (int t = 0; t < terms.length; t++) {
+            List<Integer> ids = byTerm.get(terms[t]);
+            postings[t] = new int[ids.size()];
+            for (int i = 0; i < postings[t].length; i++) postings[t][i] = ids.get(i);
+            termId.put(terms[t], t);
+            chars += terms[t].length();
+        }
+        docTerms = new int[byRank.length][];
+        for (int r = 0; r < byRank.length; r++) {
+            int[] ids = new int[tokens.get(r).size()];
+            int i = 0;
+            for (String t : tokens.get(r)) ids[i++] = termId.get(t); // TreeSet order == term id order
+            docTerms[r] = ids;
+        }
+
+        // Terms arrive sorted, so the child a term can share is always its parent's newest child
+        int cap = chars + 1;
+        label = new char[cap];
+        firstChild = new int[cap];
+        nextSibling = new int[cap];
+        int[] lastChild = new int[cap];
+        int[] termAt = new int[cap];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+        Arrays.fill(lastChild, -1);
+        Arrays.fill(termAt, -1);
+        int nodes = 1;
+        for (int t = 0; t < terms.length; t++) {
+            int node = 0;
+            for (int i = 0; i < terms[t].length(); i++) {
+                char c = terms[t].charAt(i);
+                int child = lastChild[node];
+                if (child < 0 || label[child] != c) {
+                    child = nodes++;
+                    label[child] = c;
+                    if (lastChild[node] < 0) firstChild[node] = child; else nextSibling[lastChild[node]] = child;
+                    lastChild[node] = child;
+                }
+                node = child;
+            }
+            termAt[node] = t;
+        }
+
+        // Children always have higher node numbers, so a reverse sweep is bottom-up
+        int[][] top = new int[nodes][];
+        int[] buf = new int[NODE_TOP_K * 64];
+        for (int node = nodes - 1; node >= 0; node--) {
+            int n = 0;
+            if (termAt[node] >= 0) {
+                int[] p = postings[termAt[node]];
+                for (int i = 0; i < Math.min(NODE_TOP_K, p.length); i++) buf[n++] = p[i];
+            }
+            for (int c = firstChild[node]; c >= 0; c = nextSibling[c]) {
+                if (n + top[c].length > buf.length) buf = Arrays.copyOf(buf, 2 * (n + top[c].length));
+                for (int id : top[c]) buf[n++] = id;
+            }
+            Arrays.sort(buf, 0, n);
+            int kept = 0;
+            for (int i = 0; i < n && kept < NODE_TOP_K; i++) {
+                if (kept == 0 || buf[i] != buf[kept - 1]) buf[kept++] = buf[i];
+            }
+            top[node] = Arrays.copyOf(buf, kept);
+        }
+        topStart = new int[nodes + 1];
+        for (int node = 0; node < nodes; node++) topStart[node + 1] = topStart[node] + top[node].length;
+        topPool = new int[topStart[nodes]];
+        for (int node = 0; node < nodes; node++) System.arraycopy(top[node], 0, topPool, topStart[node], top[node].length);
+    }
+
+    int size() {
+        return byRank.length;
+    }
+
+    int termCount() {
+        return terms.length;
+    }
+
+    // Lowercase words with accents (NFD combining marks) and apostrophes (' and U+2019) removed,
+    // so an accented "Amelie" -> amelie and "Schindler's" -> schindlers
+    static List<String> tokenize(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null || text.isEmpty()) return out;
+        String s = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK || c == '\'' || c == '\u2019') continue;
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                out.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) out.add(word.toString());
+        return out;
+    }
+
+    // Movies matching text as it is being typed, most popular first. Every finished word must be
+    // a whole term; the last word is treated as a prefix unless the text ends in a separator.
+    List<Movie> complete(String text, int k) {
+        List<String> words = tokenize(text);
+        List<Movie> out = new ArrayList<>();
+        if (words.isEmpty() || k <= 0) return out;
+        char last = text.charAt(text.length() - 1);
+        boolean open = Character.isLetterOrDigit(last) || Character.getType(last) == Character.NON_SPACING_MARK;
+        String prefix = open ? words.remove(words.size() - 1) : null;
+
+        if (words.isEmpty()) {
+            int node = walk(prefix);
+            if (node < 0) return out;
+            if (k <= NODE_TOP_K) {
+                for (int i = topStart[node]; i < topStart[node + 1] && out.size() < k; i++) out.add(byRank[topPool[i]]);
+                return out;
+            }
+        }
+
+        int lo = 0, hi = 0;
+        if (prefix != null) {
+            lo = lowerBound(prefix);
+            hi = lowerBound(prefix + Character.MAX_VALUE);
+            if (lo == hi) return out;
+        }
+        int[] candidates = null;
+        int count = byRank.length; // no finished words: every movie is a candidate
+        if (!words.isEmpty()) {
+            int[][] lists = new int[words.size()][];
+            for (int i = 0; i < lists.length; i++) {
+                int t = Arrays.binarySearch(terms, words.get(i));
+                if (t < 0) return out;
+                lists[i] = postings[t];
+            }
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+            candidates = lists[0].clone();
+            count = candidates.length;
+            for (int i = 1; i < lists.length && count > 0; i++) count = intersect(candidates, count, lists[i]);
+        }
+        for (int i = 0; i < count && out.size() < k; i++) {
+            int r = candidates == null ? i : candidates[i];
+            if (prefix == null || hasTermIn(docTerms[r], lo, hi)) out.add(byRank[r]);
+        }
+        return out;
+    }
+
+    // Trie node spelling prefix, or -1
+    private int walk(String prefix) {
+        int node = 0;
+        for (int i = 0; i < prefix.length() && node >= 0; i++) {
+            char c = prefix.charAt(i);
+            int child = firstChild[node];
+            while (child >= 0 && label[child] < c) child = nextSibling[child];
+            node = child >= 0 && label[child] == c ? child : -1;
+        }
+        return node;
+    }
+
+    private int lowerBound(String key) {
+        int lo = 0, hi = terms.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (terms[mid].compareTo(key) < 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // Keep the ids of a[0..n) that also occur in b; both ascending. Returns the new length.
+    private static int intersect(int[] a, int n, int[] b) {
+        int kept = 0;
+        for (int i = 0, j = 0; i < n && j < b.length; ) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else { a[kept++] = a[i]; i++; j++; }
+        }
+        return kept;
+    }
+
+    // Does the ascending term list contain an id in [lo, hi)?
+    private static boolean hasTermIn(int[] ids, int lo, int hi) {
+        int a = 0, b = ids.length;
+        while (a < b) {
+            int mid = (a + b) >>> 1;
+            if (ids[mid] < lo) a = mid + 1; else b = mid;
+        }
+        return a < ids.length && ids[a] < hi;
+    }
+}
+
+// "More like this": movies as sparse sets of genre, director, star and decade features, compared by
+// Jaccard similarity. MinHash signatures (bands x rows values per movie) and LSH banding turn the
+// search into a few bucket lookups: two movies share a band bucket with probability
+// 1 - (1 - J^rows)^bands, so only likely neighbours get the exact Jaccard re-rank.
+// Immutable after construction; queries can run from several threads.
+class MovieSimilarity {
+    private final Movie[] movies;
+    private final int[][] features;   // movie -> ascending feature ids
+    private final int bands, rows, maxBucket;
+    private final long[][] buckets;   // band -> sorted (bucket hash << 32 | movie id)
+    private final int[][] bucketOf;   // movie -> its bucket hash in each band
+
+    MovieSimilarity(List<Movie> movies) {
+        this(movies, 64, 2, 256, 42);
+    }
+
+    // maxBucket: buckets with more movies than this are skipped at query time (e.g. a lone common
+    // genre), they cost a lot and say little
+    MovieSimilarity(List<Movie> movies, int bands, int rows, int maxBucket, long seed) {
+        if (bands <= 0 || rows <= 0) throw new IllegalArgumentException("bands and rows must be positive");
+        this.movies = movies.toArray(new Movie[0]);
+        this.bands = bands;
+        this.rows = rows;
+        this.maxBucket = maxBucket;
+        int n = this.movies.length;
+
+        Map<String, Integer> dictionary = new HashMap<>();
+        features = new int[n][];
+        for (int i = 0; i < n; i++) {
+            Movie m = this.movies[i];
+            TreeSet<Integer> set = new TreeSet<>();
+            for (String g : m.genres) if (!g.isEmpty()) set.add(feature(dictionary, "g:" + g.toLowerCase()));
+            if (!m.director.isEmpty()) set.add(feature(dictionary, "d:" + m.director.toLowerCase()));
+            for (String star : m.stars) if (!star.isEmpty()) set.add(feature(dictionary, "s:" + star.toLowerCase()));
+            set.add(feature(dictionary, "y:" + m.releaseYear / 10 * 10));
+            features[i] = new int[set.size()];
+            int j = 0;
+            for (int f : set) features[i][j++] = f;
+        }
+
+        // Hash function h_j(x) = mix(x * mul[j] + add[j]); signature[j] = min over the movie's features
+        Random rnd = new Random(seed);
+        long[] mul = new long[bands * rows], add = new long[bands * rows];
+        for (int j = 0; j < mul.length; j++) {
+            mul[j] = rnd.nextLong() | 1;
+            add[j] = rnd.nextLong();
+        }
+        buckets = new long[bands][n];
+        bucketOf = new int[n][bands];
+        long[] sig = new long[mul.length];
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(sig, Long.MAX_VALUE);
+            for (int f : features[i]) {
+                for (int j = 0; j < sig.length; j++) sig[j] = Math.min(sig[j], mix(f * mul[j] + add[j]));
+            }
+            for (int b = 0; b < bands; b++) {
+                long h = b;
+                for (int r = 0; r < rows; r++) h = mix(h * 31 + sig[b * rows + r]);
+                bucketOf[i][b] = (int) (h >>> 32);
+                buckets[b][i] = (long) bucketOf[i][b] << 32 | i;
+            }
+        }
+        for (long[] band : buckets) Arrays.sort(band);
+    }
+
+    private static int feature(Map<String, Integer> dictionary, String key) {
+        Integer id = dictionary.get(key);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.put(key, id);
+        }
+        return id;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    int size() {
+        return movies.length;
+    }
+
+    Movie movie(int id) {
+        return movies[id];
+    }
+
+    // Id of the movie with this title (case-insensitive), or -1
+    int find(String title) {
+        for (int i = 0; i < movies.length; i++) if (movies[i].name.equalsIgnoreCase(title.trim())) return i;
+        return -1;
+    }
+
+    // |A n B| / |A u B| over the sorted feature lists
+    double jaccard(int a, int b) {
+        int[] x = features[a], y = features[b];
+        int common = 0;
+        for (int i = 0, j = 0; i < x.length && j < y.length; ) {
+            if (x[i] < y[j]) i++;
+            else if (x[i] > y[j]) j++;
+            else { common++; i++; j++; }
+        }
+        return common / (double) (x.length + y.length - common);
+    }
+
+    // Up to k most similar movies to id among its LSH candidates: highest Jaccard first, then most votes
+    int[] neighbours(int id, int k) {
+        if (id < 0 || id >= movies.length) throw new IllegalArgumentException("No movie with id " + id);
+        BitSet seen = new BitSet(movies.length);
+        seen.set(id);
+        int[] candidates = new int[16];
+        int count = 0;
+        for (int b = 0; b < bands; b++) {
+            long[] band = buckets[b];
+            int hash = bucketOf[id][b];
+            int lo = lowerBound(band, (long) hash << 32);
+            int hi = hash == Integer.MAX_VALUE ? band.length : lowerBound(band, (long) (hash + 1) << 32);
+            if (hi - lo > maxBucket) continue;
+            for (int i = lo; i < hi; i++) {
+                int other = (int) band[i];
+                if (seen.get(other)) continue;
+                seen.set(other);
+                if (count == candidates.length) candidates = Arrays.copyOf(candidates, 2 * count);
+                candidates[count++] = other;
+            }
+        }
+        return rank(id, candidates, count, k);
+    }
+
+    // Exact answer by comparing against every movie; the reference the LSH answer is measured against
+    int[] bruteForce(int id, int k) {
+        int[] all = new int[movies.length - 1];
+        for (int i = 0, j = 0; i < movies.length; i++) if (i != id) all[j++] = i;
+        return rank(id, all, all.length, k);
+    }
+
+    private int[] rank(int id, int[] candidates, int count, int k) {
+        double[] score = new double[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            score[i] = jaccard(id, candidates[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            if (score[a] != score[b]) return Double.compare(score[b], score[a]);
+            int pa = movies[candidates[a]].popularity, pb = movies[candidates[b]].popularity;
+            if (pa != pb) return Integer.compare(pb, pa);
+            return Integer.compare(candidates[a], candidates[b]);
+        });
+        int[] out = new int[Math.min(k, count)];
+        for (int i = 0; i < out.length; i++) out[i] = candidates[order[i]];
+        return out;
+    }
+
+    private static int lowerBound(long[] a, long key) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // Neighbour lists for the whole catalogue, split into contiguous id ranges over a fixed pool
+    int[][] allNeighbours(int k, int threads) throws InterruptedException {
+        threads = Math.max(1, threads);
+        int n = movies.length;
+        int[][] out = new int[n][];
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            int chunk = Math.max(1, (n + threads * 4 - 1) / (threads * 4));
+            List<Future<?>> parts = new ArrayList<>();
+            for (int start = 0; start < n; start += chunk) {
+                int from = start, to = Math.min(n, start + chunk);
+                parts.add(pool.submit(() -> {
+                    for (int i = from; i < to; i++) out[i] = neighbours(i, k);
+                }));
+            }
+            for (Future<?> f : parts) f.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return out;
+    }
+}
+
+// Long-running HTTP query mode (loopback only) over an immutable catalogue snapshot.
+// Readers grab the current snapshot with one volatile read and never lock; /reload builds a new
+// catalogue off to the side and swaps it in atomically, so in-flight queries finish on the old one.
+//   GET  /top?by=rating+desc&k=10&filter=rating>=8&filter=year=1990..2000
+//   GET  /suggest?q=christopher+no&k=5
+//   POST /reload
+//   GET  /health
+class MovieQueryServer {
+    // A catalogue that is never mutated after it is published
+    static final class Snapshot {
+        final MovieCatalogue catalogue;
+        final MovieSearchIndex search;
+        final long version;
+
+        Snapshot(MovieCatalogue catalogue, MovieSearchIndex search, long version) {
+            this.catalogue = catalogue;
+            this.search = search;
+            this.version = version;
+        }
+    }
+
+    static {
+        // Small responses otherwise sit behind Nagle + delayed ACK (~40 ms per keep-alive request)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    static final int MAX_K = 1000;    // largest k a /top or /suggest request may ask for
+
+    private final String csvPath;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final Object reloadLock = new Object();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    MovieQueryServer(String csvPath, int port) throws IOException {
+        this.csvPath = csvPath;
+        reload();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        executor = requestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/top", ex -> handle(ex, "GET", () -> top(ex)));
+        server.createContext("/suggest", ex -> handle(ex, "GET", () -> suggest(ex)));
+        server.createContext("/reload", ex -> handle(ex, "POST", () -> {
+            Snapshot snap = reload();
+            return "reloaded version " + snap.version + ", " + snap.catalogue.size() + " movies\n";
+        }));
+        server.createContext("/health", ex -> handle(ex, "GET", () -> "ok version " + current.get().version + "\n"));
+    }
+
+    // One virtual thread per request when the JDK has them (21+), a fixed pool otherwise
+    static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+        }
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    Snapshot snapshot() {
+        return current.get();
+    }
+
+    // Load the CSV into a fresh catalogue and publish it; concurrent reloads are serialized.
+    // A failed read throws and leaves the current snapshot in place.
+    Snapshot reload() throws IOException {
+        synchronized (reloadLock) {
+            if (!new File(csvPath).isFile()) throw new FileNotFoundException(csvPath);
+            List<Movie> movies = MovieRecommendationSystem.readMovies(csvPath);
+            Snapshot old = current.get();
+            Snapshot next = new Snapshot(new MovieCatalogue(movies), new MovieSearchIndex(movies), old == null ? 1 : old.version + 1);
+            current.set(next);
+            return next;
+        }
+    }
+
+    private String top(HttpExchange ex) {
+        Map<String, List<String>> params = queryParams(ex.getRequestURI().getRawQuery());
+        SortKey orderBy = SortKey.parseSingle(first(params, "by", "rating desc"));
+        int k = limit(params);
+        List<String> specs = params.getOrDefault("filter", Collections.<String>emptyList());
+        RangeFilter[] filters = new RangeFilter[specs.size()];
+        for (int i = 0; i < filters.length; i++) filters[i] = RangeFilter.parse(specs.get(i));
+
+        Snapshot snap = current.get();
+        StringBuilder out = new StringBuilder("version ").append(snap.version).append('\n');
+        for (Movie m : snap.catalogue.topK(orderBy, k, filters)) out.append(m).append('\n');
+        return out.toString();
+    }
+
+    private String suggest(HttpExchange ex) {
+        Map<String, List<String>> params = queryParams(ex.getRequestURI().getRawQuery());
+        int k = limit(params);
+        Snapshot snap = current.get();
+        StringBuilder out = new StringBuilder("version ").append(snap.version).append('\n');
+        for (Movie m : snap.search.complete(first(params, "q", ""), k)) out.append(m.name).append('\n');
+        return out.toString();
+    }
+
+    // Result count parameter k, 1..MAX_K (default 10)
+    private static int limit(Map<String, List<String>> params) {
+        int k = Integer.parseInt(first(params, "k", "10"));
+        if (k < 1 || k > MAX_K) throw new IllegalArgumentException("k must be between 1 and " + MAX_K);
+        return k;
+    }
+
+    interface Handler {
+        String run() throws IOException;
+    }
+
+    // Every exchange gets a response and is closed, whatever the handler throws
+    private static void handle(HttpExchange ex, String method, Handler handler) throws IOException {
+        try {
+            int status = 200;
+            String body;
+            try {
+                if (!ex.getRequestMethod().equalsIgnoreCase(method)) {
+                    status = 405;
+                    body = "use " + method + "\n";
+                } else {
+                    body = handler.run();
+                }
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                body = "bad request: " + e.getMessage() + "\n";
+            } catch (IOException e) {
+                status = 500;
+                body = "error: " + e.getMessage() + "\n";
+            } catch (RuntimeException | Error e) {
+                status = 500;
+                body = "internal error: " + e + "\n";
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            ex.sendResponseHeaders(status, bytes.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(bytes);
+            }
+        } finally {
+            ex.close();
+        }
+    }
+
+    static Map<String, List<String>> queryParams(String rawQuery) {
+        Map<String, List<String>> params = new HashMap<>();
+        if (rawQuery == null) return params;
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String key = decode(eq < 0 ? pair : pair.substring(0, eq));
+            String value = eq < 0 ? "" : decode(pair.substring(eq + 1));
+            params.computeIfAbsent(key, x -> new ArrayList<>()).add(value);
+        }
+        return params;
+    }
+
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String first(Map<String, List<String>> params, String key, String fallback) {
+        List<String> values = params.get(key);
+        return values == null || values.isEmpty() ? fallback : values.get(0);
+    }
+
+    // Local load test: `clients` threads issue /top queries for `seconds` while the CSV is reloaded
+    // every `reloadMillis`; prints throughput and latency percentiles.
+    static void bench(String csvPath, int clients, int seconds, long reloadMillis) throws Exception {
+        MovieQueryServer srv = new MovieQueryServer(csvPath, 0);
+        srv.start();
+        String[] queries = {
+            "/top?by=rating+desc&k=10",
+            "/top?by=votes+desc&k=100&filter=rating%3E%3D8&filter=year%3D1990..2000",
+            "/top?by=gross+desc&k=20&filter=runtime%3C%3D120",
+            "/top?by=year+asc&k=50&filter=metascore%3E%3D90",
+        };
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            final int id = c;
+            threads[c] = new Thread(() -> {
+                long[] lat = new long[1 << 16];
+                int n = 0;
+                try {
+                    while (System.nanoTime() < deadline) {
+                        long t0 = System.nanoTime();
+                        get(srv.port(), queries[(id + n) % queries.length]);
+                        if (n == lat.length) lat = Arrays.copyOf(lat, n * 2);
+                        lat[n++] = System.nanoTime() - t0;
+                    }
+                } catch (IOException e) {
+                    System.out.println("client " + id + " failed: " + e.getMessage());
+                }
+                latencies[id] = lat;
+                counts[id] = n;
+            });
+            threads[c].start();
+        }
+        int reloads = 0;
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(reloadMillis);
+            srv.reload();
+            reloads++;
+        }
+        for (Thread t : threads) t.join();
+        srv.stop();
+
+        int total = 0;
+        for (int n : counts) total += n;
+        long[] all = new long[total];
+        for (int c = 0, at = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, at, counts[c]);
+            at += counts[c];
+        }
+        Arrays.sort(all);
+        System.out.printf("%d queries from %d clients in %d s (%.0f QPS) with %d reloads%n",
+                total, clients, seconds, total / (double) seconds, reloads);
+        if (total > 0) {
+            System.out.printf("latency p50=%.3f ms p99=%.3f ms max=%.3f ms%n",
+                    all[total / 2] / 1e6, all[(int) (total * 0.99)] / 1e6, all[total - 1] / 1e6);
+        }
+    }
+
+    private static void get(int port, String path) throws IOException {
+        HttpURLConnection con = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+        try (InputStream in = con.getInputStream()) {
+            byte[] skip = new byte[4096];
+            while (in.read(skip) >= 0) { }
+        }
+        if (con.getResponseCode() != 200) throw new IOException("HTTP " + con.getResponseCode() + " for " + path);
+    }
+}
+
+// Streaming RFC-4180 CSV reader: quoted fields, "" escapes and line breaks inside quotes.
+// A single state machine pass per character; each record's (unescaped) fields are kept in one
+// reusable char buffer and exposed as ranges, so numbers are parsed without building Strings.
+class CsvReader implements Closeable {
+    private static final int FIELD_START = 0, UNQUOTED = 1, QUOTED = 2, QUOTE_IN_QUOTED = 3;
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+    private final Reader in;
+    private final char[] buf = new char[64 * 1024];
+    private int pos, limit;
+
+    private char[] record = new char[512]; // field chars of the current record
+    private int length;
+    private int[] starts = new int[32], ends = new int[32];
+    private int fields;
+
+    CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    // Advance to the next record; false at end of input
+    boolean next() throws IOException {
+        fields = 0;
+        length = 0;
+        int state = FIELD_START;
+        boolean any = false;
+        int fieldStart = 0;
+        while (true) {
+            if (pos == limit) {
+                limit = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    if (!any) return false;
+                    endField(fieldStart);
+                    return true;
+                }
+            }
+            char c = buf[pos++];
+            any = true;
+            switch (state) {
+                case FIELD_START:
+                case UNQUOTED:
+                    if (c == ',') {
+                        endField(fieldStart);
+                        fieldStart = length;
+                        state = FIELD_START;
+                    } else if (c == '\n') {
+                        endField(fieldStart);
+                        return true;
+                    } else if (c == '"' && state == FIELD_START) {
+                        state = QUOTED;
+                    } else if (c != '\r') {
+                        append(c);
+                        state = UNQUOTED;
+                    }
+                    break;
+                case QUOTED:
+                    if (c == '"') state = QUOTE_IN_QUOTED;
+                    else append(c); // commas and line breaks are data here
+                    break;
+                default: // QUOTE_IN_QUOTED: either an escaped quote or the closing one
+                    if (c == '"') {
+                        append('"');
+                        state = QUOTED;
+                    } else if (c == ',') {
+                        endField(fieldStart);
+                        fieldStart = length;
+                        state = FIELD_START;
+                    } else if (c == '\n') {
+                        endField(fieldStart);
+                        return true;
+                    } else if (c != '\r') {
+                        append(c); // lenient: text after a closing quote
+                        state = UNQUOTED;
+                    }
+            }
+        }
+    }
+
+    private void append(char c) {
+        if (length == record.length) record = Arrays.copyOf(record, length * 2);
+        record[length++] = c;
+    }
+
+    private void endField(int fieldStart) {
+        if (fields == starts.length) {
+            starts = Arrays.copyOf(starts, fields * 2);
+            ends = Arrays.copyOf(ends, fields * 2);
+        }
+        starts[fields] = fieldStart;
+        ends[fields++] = length;
+    }
+
+    int size() { return fields; }
+
+    // Raw access to field i as record()[start(i), end(i)); valid until the next call to next()
+    char[] record() { return record; }
+    int start(int i) { check(i); return starts[i]; }
+    int end(int i) { check(i); return ends[i]; }
+
+    String get(int i) {
+        check(i);
+        return new String(record, starts[i], ends[i] - starts[i]);
+    }
+
+    boolean isBlank(int i) {
+        check(i);
+        for (int p = starts[i]; p < ends[i]; p++) {
+            if (!Character.isWhitespace(record[p])) return false;
+        }
+        return true;
+    }
+
+    // Integer made of the digits in field i, ignoring everything else ("2,343,110" -> 2343110)
+    int getDigits(int i) {
+        long v = getLongDigits(i);
+        if (v > Integer.MAX_VALUE) throw new NumberFormatException("Out of int range: " + get(i));
+        return (int) v;
+    }
+
+    long getLongDigits(int i) {
+        check(i);
+        long v = 0;
+        boolean any = false;
+        for (int p = starts[i]; p < ends[i]; p++) {
+            int d = record[p] - '0';
+            if (d < 0 || d > 9) continue;
+            if (v > (Long.MAX_VALUE - d) / 10) throw new NumberFormatException("Out of long range: " + get(i));
+            v = v * 10 + d;
+            any = true;
+        }
+        if (!any) throw new NumberFormatException("No digits in: \"" + get(i) + "\"");
+        return v;
+    }
+
+    // Plain decimals (9.3, -12, 0.25) are parsed in place while the mantissa stays below 2^53, so it is
+    // exact as a double and the one division rounds correctly; anything else goes through Double.parseDouble
+    double getDouble(int i) {
+        check(i);
+        int p = starts[i], end = ends[i];
+        boolean negative = p < end && record[p] == '-';
+        if (negative) p++;
+        long mantissa = 0;
+        int digits = 0, scale = -1;
+        for (; p < end; p++) {
+            char c = record[p];
+            if (c == '.' && scale < 0) { scale = 0; continue; }
+            int d = c - '0';
+            if (d < 0 || d > 9 || digits == 18) return Double.parseDouble(get(i));
+            mantissa = mantissa * 10 + d;
+            digits++;
+            if (scale >= 0) scale++;
+        }
+        if (digits == 0 || mantissa >= 1L << 53) return Double.parseDouble(get(i));
+        double v = scale > 0 ? mantissa / POW10[scale] : mantissa;
+        return negative ? -v : v;
+    }
+
+    private void check(int i) {
+        if (i < 0 || i >= fields) throw new IndexOutOfBoundsException("Field " + i + " of " + fields);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
+
+class MovieRecommendationSystem {
+
+    // quickSort algorithm
+    public static void quickSort(List<Movie> movies, int low, int high, String parameter) {
+        if (low < high) {
+            int pi = partition(movies, low, high, parameter);
+            quickSort(movies, low, pi - 1, parameter);
+            quickSort(movies, pi + 1, high, parameter);
+        }
+    }
+    private static int partition(List<Movie> movies, int low, int high, String parameter) {
+        Movie pivot = movies.get(high);
+        int i = low - 1;
+
+        for (int j = low; j < high; j++) {
+            if (compare(movies.get(j), pivot, parameter)) {
+                i++;
+                Collections.swap(movies, i, j);
+            }
+        }
+        Collections.swap(movies, i + 1, high);
+        return i + 1;
+    }
+
+    // ---- Introsort mode ----
+    private static final int INSERTION_CUTOFF = 16;
+
+    // Same ordering as quickSort (descending by parameter), with guaranteed O(n log n): median-of-three
+    // or ninther pivots, 3-way partitioning so runs of equal keys finish in one pass, heapsort when the
+    // recursion gets too deep, and insertion sort for small ranges. Works on a primitive key column.
+    public static void introSort(List<Movie> movies, String parameter) {
+        int n = movies.size();
+        double[] keys = new SortKey(MovieField.parse(parameter), true).extract(movies);
+        int[] idx = new int[n];
+        for (int i = 0; i < n; i++) idx[i] = i;
+        introSort(keys, idx, 0, n - 1, 2 * (32 - Integer.numberOfLeadingZeros(Math.max(1, n))));
+
+        Movie[] copy = movies.toArray(new Movie[0]);
+        for (int i = 0; i < n; i++) movies.set(i, copy[idx[i]]);
+    }
+
+    private static void introSort(double[] a, int[] idx, int lo, int hi, int depth) {
+        while (hi - lo > INSERTION_CUTOFF) {
+            if (depth-- == 0) {
+                heapSort(a, idx, lo, hi);
+                return;
+            }
+            double pivot = a[choosePivot(a, lo, hi)];
+            // Dutch national flag: [lo, lt) < pivot, [lt, i) == pivot, (gt, hi] > pivot
+            int lt = lo, i = lo, gt = hi;
+            while (i <= gt) {
+                int c = Double.compare(a[i], pivot);
+                if (c < 0) swap(a, idx, lt++, i++);
+                else if (c > 0) swap(a, idx, i, gt--);
+                else i++;
+            }
+            // recurse into the smaller side, loop on the larger one: stack depth stays O(log n)
+            if (lt - lo < hi - gt) {
+                introSort(a, idx, lo, lt - 1, depth);
+                lo = gt + 1;
+            } else {
+                introSort(a, idx, gt + 1, hi, depth);
+                hi = lt - 1;
+            }
+        }
+        insertionSort(a, idx, lo, hi);
+    }
+
+    // Median of three for small ranges, Tukey's ninther for large ones
+    private static int choosePivot(double[] a, int lo, int hi) {
+        int mid = (lo + hi) >>> 1;
+        if (hi - lo < 128) return median3(a, lo, mid, hi);
+        int step = (hi - lo) / 8;
+        return median3(a, median3(a, lo, lo + step, lo + 2 * step),
+                          median3(a, mid - step, mid, mid + step),
+                          median3(a, hi - 2 * step, hi - step, hi));
+    }
+
+    private static int median3(double[] a, int i, int j, int k) {
+        if (Double.compare(a[i], a[j]) < 0) {
+            if (Double.compare(a[j], a[k]) < 0) return j;
+            return Double.compare(a[i], a[k]) < 0 ? k : i;
+        }
+        if (Double.compare(a[k], a[j]) < 0) return j;
+        return Double.compare(a[k], a[i]) < 0 ? k : i;
+    }
+
+    private static void insertionSort(double[] a, int[] idx, int lo, int hi) {
+        for (int i = lo + 1; i <= hi; i++) {
+            double x = a[i];
+            int xi = idx[i], j = i - 1;
+            while (j >= lo && Double.compare(a[j], x) > 0) {
+                a[j + 1] = a[j];
+                idx[j + 1] = idx[j];
+                j--;
+            }
+            a[j + 1] = x;
+            idx[j + 1] = xi;
+        }
+    }
+
+    private static void heapSort(double[] a, int[] idx, int lo, int hi) {
+        int n = hi - lo + 1;
+        for (int i = n / 2 - 1; i >= 0; i--) siftDown(a, idx, lo, i, n);
+        for (int end = n - 1; end > 0; end--) {
+            swap(a, idx, lo, lo + end);
+            siftDown(a, idx, lo, 0, end);
+        }
+    }
+
+    private static void siftDown(double[] a, int[] idx, int lo, int i, int n) {
+        while (true) {
+            int l = 2 * i + 1, r = l + 1, m = i;
+            if (l < n && Double.compare(a[lo + l], a[lo + m]) > 0) m = l;
+            if (r < n && Double.compare(a[lo + r], a[lo + m]) > 0) m = r;
+            if (m == i) return;
+            swap(a, idx, lo + i, lo + m);
+            i = m;
+        }
+    }
+
+    private static void swap(double[] a, int[] idx, int i, int j) {
+        double t = a[i]; a[i] = a[j]; a[j] = t;
+        int ti = idx[i]; idx[i] = idx[j]; idx[j] = ti;
+    }
+
+    private static boolean compare(Movie m1, Movie m2, String parameter) {
+        switch (parameter.toLowerCase()) {
+            case "rating":
+                return m1.imdbRating > m2.imdbRating;
+            case "year":
+                return m1.releaseYear > m2.releaseYear;
+            case "popularity":
+                return m1.popularity > m2.popularity;
+            default:
+                return false;
+        }
+    }
+    // Stable sort by precompiled keys: each key is pulled into a primitive column once and an index
+    // permutation is merge-sorted, so comparisons never touch Movie objects or strings.
+    public static int[] sortedOrder(List<Movie> movies, SortKey... keys) {
+        int n = movies.size();
+        double[][] cols = new double[keys.length][];
+        for (int k = 0; k < keys.length; k++) cols[k] = keys[k].extract(movies);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        int[] aux = order.clone();
+        sortIndex(aux, order, 0, n, cols);
+        return order;
+    }
+
+    // Reorder the list in place by sortedOrder
+    public static void sortBy(List<Movie> movies, SortKey... keys) {
+        int[] order = sortedOrder(movies, keys);
+        Movie[] copy = movies.toArray(new Movie[0]);
+        for (int i = 0; i < order.length; i++) movies.set(i, copy[order[i]]);
+    }
+
+    // Merge sort of index range [lo, hi) into dst; src and dst hold the same indices on entry
+    private static void sortIndex(int[] src, int[] dst, int lo, int hi, double[][] cols) {
+        if (hi - lo <= 16) {
+            for (int i = lo + 1; i < hi; i++) {
+                int x = dst[i], j = i - 1;
+                while (j >= lo && compareKeys(cols, dst[j], x) > 0) {
+                    dst[j + 1] = dst[j];
+                    j--;
+                }
+                dst[j + 1] = x;
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        sortIndex(dst, src, lo, mid, cols);
+        sortIndex(dst, src, mid, hi, cols);
+        int i = lo, j = mid, k = lo;
+        while (i < mid && j < hi) dst[k++] = compareKeys(cols, src[j], src[i]) < 0 ? src[j++] : src[i++];
+        while (i < mid) dst[k++] = src[i++];
+        while (j < hi) dst[k++] = src[j++];
+    }
+
+    private static int compareKeys(double[][] cols, int a, int b) {
+        for (double[] col : cols) {
+            int c = Double.compare(col[a], col[b]);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    // CSV Reader
+    public static List<Movie> loadMovies(String filePath) {
+        try {
+            return readMovies(filePath);
+        } catch (IOException e) {
+            System.out.println("Error reading file: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    // As loadMovies, but a failed read is thrown instead of returning what was read so far
+    static List<Movie> readMovies(String filePath) throws IOException {
+        List<Movie> movies = new ArrayList<>();
+
+        try (CsvReader csv = new CsvReader(new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+            csv.next(); // skip header
+            while (csv.next()) {
+                try {
+                    String name = csv.get(1);
+                    int year = csv.getDigits(2);
+                    double rating = csv.getDouble(6);
+                    int popularity = csv.getDigits(14); // No_of_Votes
+
+                    Movie m = new Movie(name, rating, year, popularity);
+                    m.runtime = csv.getDigits(4);
+                    if (!csv.isBlank(8)) m.metaScore = csv.getDouble(8);
+                    if (!csv.isBlank(15)) m.gross = csv.getLongDigits(15);
+                    m.genres = csv.get(5).split("\\s*,\\s*");
+                    m.director = csv.get(9);
+                    m.stars = new String[] { csv.get(10), csv.get(11), csv.get(12), csv.get(13) };
+                    movies.add(m);
+                } catch (Exception e) {
+                    // Skip bad rows
+                }
+            }
+        }
+        return movies;
+    }
+    static void printUsage() {
+        System.out.println("Usage: java MovieRecommendationSystem [introsort]");
+        System.out.println("       java MovieRecommendationSystem \"rating desc, votes desc\"");
+        System.out.println("       java MovieRecommendationSystem query \"rating desc\" [k] [field=lo..hi ...]");
+        System.out.println("       java MovieRecommendationSystem suggest \"prefix\" [k]");
+        System.out.println("       java MovieRecommendationSystem similar \"title\" [k] | similar-all [threads] [k]");
+        System.out.println("       java MovieRecommendationSystem serve [port] | bench [clients] [seconds]");
+    }
+
+    // Usage: java MovieRecommendationSystem                          (interactive quickSort)
+    //        java MovieRecommendationSystem introsort                (interactive introsort)
+    //        java MovieRecommendationSystem "rating desc, votes desc"  (precompiled multi-key sort)
+    //        java MovieRecommendationSystem query "rating desc" 10 year=1990..2000  (indexed top-K)
+    //        java MovieRecommendationSystem suggest "nolan dar" 5     (typeahead search)
+    //        java MovieRecommendationSystem similar "Inception" 5 | similar-all [threads] [k]  (more like this)
+    //        java MovieRecommendationSystem serve [port] | bench [clients] [seconds]  (HTTP query mode)
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("serve")) {
+            MovieQueryServer server = new MovieQueryServer("imdb_top_1000.csv", args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+            server.start();
+            System.out.println("Serving on http://127.0.0.1:" + server.port() + "/top?by=rating+desc&k=10 (POST /reload to swap in the CSV)");
+            return;
+        }
+        if (args.length > 0 && args[0].equals("bench")) {
+            int clients = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+            int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+            MovieQueryServer.bench("imdb_top_1000.csv", clients, seconds, 1000);
+            return;
+        }
+        if (args.length == 1 && Arrays.asList("query", "similar", "suggest").contains(args[0])) {
+            printUsage(); // these modes need arguments
+            return;
+        }
+        Scanner sc = new Scanner(System.in);
+        // Load dataset
+        System.out.println("Loading movie dataset");
+        List<Movie> movies = loadMovies("imdb_top_1000.csv");
+        System.out.println("Total movies loaded: " + movies.size());
+
+        boolean intro = args.length > 0 && args[0].equals("introsort");
+        if (args.length > 1 && args[0].equals("query")) {
+            try {
+                runQuery(new MovieCatalogue(movies), Arrays.copyOfRange(args, 1, args.length));
+            } catch (IllegalArgumentException e) { // bad spec, k or filter (NumberFormatException included)
+                System.out.println(e.getMessage());
+                printUsage();
+            }
+            return;
+        }
+        if (args.length > 1 && args[0].equals("similar")) {
+            runSimilar(new MovieSimilarity(movies), args[1], args.length > 2 ? Integer.parseInt(args[2]) : 10);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("similar-all")) {
+            int threads = args.length > 1 ? Math.max(1, Integer.parseInt(args[1])) : Runtime.getRuntime().availableProcessors();
+            runSimilarAll(new MovieSimilarity(movies), threads, args.length > 2 ? Integer.parseInt(args[2]) : 10);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("suggest")) {
+            runSuggest(new MovieSearchIndex(movies), args[1], args.length > 2 ? Integer.parseInt(args[2]) : 10);
+            return;
+        }
+        if (args.length > 0 && !intro) {
+            SortKey[] keys;
+            try {
+                keys = SortKey.parse(String.join(" ", args));
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
+                printUsage();
+                return;
+            }
+            long start = System.currentTimeMillis();
+            sortBy(movies, keys);
+            long end = System.currentTimeMillis();
+            printTop(movies, Arrays.toString(keys), 10);
+            System.out.println("\nSorting completed in " + (end - start) + " ms.");
+            return;
+        }
+        // Get user input
+        System.out.println("\nChoose sorting parameter:");
+        System.out.println("1. rating");
+        System.out.println("2. year");
+        System.out.println("3. popularity");
+        System.out.print("Enter your choice: ");
+        String choice = sc.nextLine().trim().toLowerCase();
+
+        // Validate input
+        if (!(choice.equals("rating") || choice.equals("year") || choice.equals("popularity"))) {
+            System.out.println("Invalid choice. Defaulting to rating.");
+            choice = "rating";
+        }
+        // Sort using QuickSort (or Introsort)
+        long start = System.currentTimeMillis();
+        if (intro) introSort(movies, choice);
+        else quickSort(movies, 0, movies.size() - 1, choice);
+        long end = System.currentTimeMillis();
+        // Display top 10 recommended movies
+        printTop(movies, choice, 10);
+
+        System.out.println("\nSorting completed in " + (end - start) + " ms.");
+        sc.close();
+    }
+
+    // query "<order-by key>" [k] [filters...], e.g. query "rating desc" 10 rating>=8 year=1990..2000
+    static void runQuery(MovieCatalogue catalogue, String[] params) {
+        SortKey orderBy = SortKey.parseSingle(params[0]);
+        int k = 10;
+        if (params.length > 1) {
+            try {
+                k = Integer.parseInt(params[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("k must be a number: " + params[1]);
+            }
+        }
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1: " + k);
+        RangeFilter[] filters = new RangeFilter[Math.max(0, params.length - 2)];
+        for (int i = 0; i < filters.length; i++) filters[i] = RangeFilter.parse(params[i + 2]);
+
+        long start = System.nanoTime();
+        List<Movie> top = catalogue.topK(orderBy, k, filters);
+        long end = System.nanoTime();
+        printTop(top, orderBy + (filters.length > 0 ? " where " + Arrays.toString(filters) : ""), k);
+        System.out.printf("%nQuery answered in %.3f ms.%n", (end - start) / 1e6);
+    }
+
+    // suggest "<text being typed>" [k], e.g. suggest "nolan dar" 5
+    static void runSuggest(MovieSearchIndex index, String text, int k) {
+        List<Movie> hits = index.complete(text, k);
+        int rounds = 100000;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) index.complete(text, k);
+        long end = System.nanoTime();
+        printTop(hits, "popularity, matching \"" + text + "\"", k);
+        System.out.printf("%nIndexed %d terms; completion took %.2f us on average.%n",
+                index.termCount(), (end - start) / 1e3 / rounds);
+    }
+
+    // similar "<title>" [k], e.g. similar "Inception" 5
+    static void runSimilar(MovieSimilarity sim, String title, int k) {
+        int id = sim.find(title);
+        if (id < 0) {
+            System.out.println("No movie titled \"" + title + "\"");
+            return;
+        }
+        long start = System.nanoTime();
+        int[] near = sim.neighbours(id, k);
+        long end = System.nanoTime();
+        System.out.println("\nMovies like " + sim.movie(id).name + ":\n");
+        for (int other : near) {
+            System.out.printf("%s | Similarity: %.2f%n", sim.movie(other), sim.jaccard(id, other));
+        }
+        System.out.printf("%nQuery answered in %.3f ms.%n", (end - start) / 1e6);
+    }
+
+    // similar-all [threads] [k]: neighbour lists for every movie, with recall against brute force
+    static void runSimilarAll(MovieSimilarity sim, int threads, int k) throws InterruptedException {
+        long start = System.nanoTime();
+        int[][] all = sim.allNeighbours(k, threads);
+        long end = System.nanoTime();
+
+        // Recall counts a hit when the LSH list reaches the exact k-th best similarity
+        long found = 0, wanted = 0;
+        for (int id = 0; id < sim.size(); id++) {
+            int[] exact = sim.bruteForce(id, k);
+            if (exact.length == 0) continue;
+            double kth = sim.jaccard(id, exact[exact.length - 1]);
+            wanted += exact.length;
+            for (int other : all[id]) if (sim.jaccard(id, other) >= kth) found++;
+        }
+        System.out.printf("Neighbour lists for %d movies (k=%d) with %d threads in %.1f ms, recall %.3f%n",
+                sim.size(), k, threads, (end - start) / 1e6, wanted == 0 ? 1.0 : found / (double) wanted);
+    }
+
+    static void printTop(List<Movie> movies, String sortedBy, int k) {
+        System.out.println("\nTop " + k + " Recommended Movies (sorted by " + sortedBy + "):\n");
+        for (int i = 0; i < Math.min(k, movies.size()); i++) {
+            System.out.println(movies.get(i));
+        }
+    }
+}
+
+// OUTPUT
+// PS C:\Users\HP\Downloads\DAA-main\DAA-main>  & 'C:\Program Files\Java\jre1.8.0_431\bin\java.exe' '-cp' 'C:\Users\HP\AppData\Roaming\Code\User\workspaceStorage\17c632c3906fbc7c024e18e064267554\redhat.java\jdt_ws\DAA-main_14177a63\bin' 'MovieRecommendationSystem' 
+// Loading movie dataset
+// Total movies loaded: 999
+
+// Choose sorting parameter:
+// 1. rating
+// 2. year
+// 3. popularity
+// Enter your choice: 1
+// Invalid choice. Defaulting to rating.
+
+// Top 10 Recommended Movies (sorted by rating):
+
+// The Shawshank Redemption                      | Rating: 9.3 | Year: 1994 | Popularity: 2343110
+// The Godfather                                 | Rating: 9.2 | Year: 1972 | Popularity: 1620367
+// 12 Angry Men                                  | Rating: 9.0 | Year: 1957 | Popularity: 689845
+// The Dark Knight                               | Rating: 9.0 | Year: 2008 | Popularity: 2303232
+// The Godfather: Part II                        | Rating: 9.0 | Year: 1974 | Popularity: 1129952
+// Schindler's List                              | Rating: 8.9 | Year: 1993 | Popularity: 1213505
+// The Lord of the Rings: The Return of the King | Rating: 8.9 | Year: 2003 | Popularity: 1642758
+// Pulp Fiction                                  | Rating: 8.9 | Year: 1994 | Popularity: 1826188
+// Il buono, il brutto, il cattivo               | Rating: 8.8 | Year: 1966 | Popularity: 688390
+// Inception                                     | Rating: 8.8 | Year: 2010 | Popularity: 2067042
+
+// Sorting completed in 7 ms.
+// PS C:\Users\HP\Downloads\DAA-main\DAA-main>  c:; cd 'c:\Users\HP\Downloads\DAA-main\DAA-main'; & 'C:\Program Files\Java\jre1.8.0_431\bin\java.exe' '-cp' 'C:\Users\HP\AppData\Roaming\Code\User\workspaceStorage\17c632c3906fbc7c024e18e064267554\redhat.java\jdt_ws\DAA-main_14177a63\bin' 'MovieRecommendationSystem' 
+// Loading movie dataset
+// Total movies loaded: 999
+
+// Choose sorting parameter:
+// 1. rating
+// 2. year
+// 3. popularity
+// Enter your choice: 2
+// Invalid choice. Defaulting to rating.
+
+// Top 10 Recommended Movies (sorted by rating):
+
+// The Shawshank Redemption                      | Rating: 9.3 | Year: 1994 | Popularity: 2343110
+// The Godfather                                 | Rating: 9.2 | Year: 1972 | Popularity: 1620367
+// 12 Angry Men                                  | Rating: 9.0 | Year: 1957 | Popularity: 689845
+// The Dark Knight                               | Rating: 9.0 | Year: 2008 | Popularity: 2303232
+// The Godfather: Part II                        | Rating: 9.0 | Year: 1974 | Popularity: 1129952
+// Schindler's List                              | Rating: 8.9 | Year: 1993 | Popularity: 1213505
+// The Lord of the Rings: The Return of the King | Rating: 8.9 | Year: 2003 | Popularity: 1642758
+// Pulp Fiction                                  | Rating: 8.9 | Year: 1994 | Popularity: 1826188
+// Il buono, il brutto, il cattivo               | Rating: 8.8 | Year: 1966 | Popularity: 688390
+// Inception                                     | Rating: 8.8 | Year: 2010 | Popularity: 2067042
+
+// Sorting completed in 0 ms.
+// PS C:\Users\HP\Downloads\DAA-main\DAA-main>  c:; cd 'c:\Users\HP\Downloads\DAA-main\DAA-main'; & 'C:\Program Files\Java\jre1.8.0_431\bin\java.exe' '-cp' 'C:\Users\HP\AppData\Roaming\Code\User\workspaceStorage\17c632c3906fbc7c024e18e064267554\redhat.java\jdt_ws\DAA-main_14177a63\bin' 'MovieRecommendationSystem'
+// Loading movie dataset
+// Total movies loaded: 999
+
+// Choose sorting parameter:
+// 1. rating
+// 2. year
+// 3. popularity
+// Enter your choice: 3
+// Invalid choice. Defaulting to rating.
+
+// Top 10 Recommended Movies (sorted by rating):
+
+// The Shawshank Redemption                      | Rating: 9.3 | Year: 1994 | Popularity: 2343110
+// The Godfather                                 | Rating: 9.2 | Year: 1972 | Popularity: 1620367
+// 12 Angry Men                                  | Rating: 9.0 | Year: 1957 | Popularity: 689845
+// The Dark Knight                               | Rating: 9.0 | Year: 2008 | Popularity: 2303232
+// The Godfather: Part II                        | Rating: 9.0 | Year: 1974 | Popularity: 1129952
+// Schindler's List                              | Rating: 8.9 | Year: 1993 | Popularity: 1213505
+// The Lord of the Rings: The Return of the King | Rating: 8.9 | Year: 2003 | Popularity: 1642758
+// Pulp Fiction                                  | Rating: 8.9 | Year: 1994 | Popularity: 1826188
+// Il buono, il brutto, il cattivo               | Rating: 8.8 | Year: 1966 | Popularity: 688390
+// Inception                                     | Rating: 8.8 | Year: 2010 | Popularity: 2067042
+
+// Sorting completed in 6 ms.
+
@@ -1,136 +1,894 @@
-//Name : Siddharth Kakade
-//PRN : 123B1F040
-//Date : 4-8-25
-import java.util.*;
-
-public class ReliefFractionalKnapsack {
-
-    static class Item {
-        String name;
-        double weight;
-        double value;
-        boolean divisible; // true -> can take fraction
-
-        Item(String name, double weight, double value, boolean divisible) {
-            if (weight <= 0) throw new IllegalArgumentException("Weight must be > 0");
-            this.name = name;
-            this.weight = weight;
-            this.value = value;
-            this.divisible = divisible;
-        }
-
-        double density() {
-            return value / weight;
-        }
-    }
-    public static double fillBoat(List<Item> items, double capacityKg) {
-        if (capacityKg <= 0) {
-            System.out.println("Boat capacity should be > 0.");
-            return 0.0;
-        }
-        // Sort by value-per-kg (density) descending
-        items.sort((a, b) -> Double.compare(b.density(), a.density()));
-
-        double remaining = capacityKg;
-        double totalValue = 0.0;
-
-        System.out.printf("Boat capacity: %.2f kg%n", capacityKg);
-        System.out.println("Selected items (name : takenWeight kg -> gainedUtility)");
-
-        for (Item it : items) {
-            if (remaining <= 0) break;
-            if (it.divisible) {
-                // take fraction if needed
-                double takeWeight = Math.min(it.weight, remaining);
-                double gainedValue = it.density() * takeWeight;
-                totalValue += gainedValue;
-                remaining -= takeWeight;
-
-                double percent = (takeWeight / it.weight) * 100.0;
-                System.out.printf("%s : %.2f kg -> %.2f utility (%.1f%% of item)%n",
-                        it.name, takeWeight, gainedValue, percent);
-            } else {
-                // indivisible: only take whole if it fits
-                if (it.weight <= remaining) {
-                    totalValue += it.value;
-                    remaining -= it.weight;
-                    System.out.printf("%s : %.2f kg -> %.2f utility (whole item)%n",
-                            it.name, it.weight, it.value);
-                } else {
-                    System.out.printf("%s : SKIPPED (needs %.2f kg, only %.2f kg left)%n",
-                            it.name, it.weight, remaining);
-                }
-            }
-        }
-        System.out.printf("Total utility value loaded: %.2f%n", totalValue);
-        System.out.printf("Unused capacity remaining: %.2f kg%n", remaining);
-        return totalValue;
-    }
-
-    // Simple user input demo
-    public static void main(String[] args) {
-        Scanner sc = new Scanner(System.in);
-        try {
-            System.out.print("Enter boat capacity W (kg): ");
-            double W = sc.nextDouble();
-            System.out.print("Enter number of different item types n: ");
-            int n = sc.nextInt();
-            sc.nextLine();
-
-            List<Item> items = new ArrayList<>();
-            for (int i = 1; i <= n; i++) {
-                System.out.printf("Item %d name: ", i);
-                String name = sc.nextLine().trim();
-                System.out.printf("Item %d weight (kg): ", i);
-                double w = sc.nextDouble();
-                System.out.printf("Item %d utility value: ", i);
-                double v = sc.nextDouble();
-                sc.nextLine();
-                System.out.printf("Is item %d divisible? (y/n): ", i);
-                String d = sc.nextLine().trim().toLowerCase();
-                boolean divisible = d.equals("y") || d.equals("yes");
-                // Basic validation
-                if (w <= 0) {
-                    System.out.println("Weight must be > 0. Please re-enter this item.");
-                    i--;
-                    continue;
-                }
-                items.add(new Item(name, w, v, divisible));
-            }
-            System.out.println();
-            fillBoat(items, W);
-        } catch (InputMismatchException ime) {
-            System.out.println("Invalid input. Please enter numbers where required.");
-        } catch (IllegalArgumentException iae) {
-            System.out.println("Error: " + iae.getMessage());
-        } finally {
-            sc.close();
-        }
-    }
-}
-
-
-// OUTPUT
-// Enter boat capacity W (kg): 10
-// Enter number of different item types n: 3
-// Item 1 name: 4 1
-// Item 1 weight (kg): 3
-// Item 1 utility value: 5
-// Is item 1 divisible? (y/n): y
-// Item 2 name: 2
-// Item 2 weight (kg): 7
-// Item 2 utility value: 4
-// Is item 2 divisible? (y/n): y
-// Item 3 name: 3
-// Item 3 weight (kg): 3
-// Item 3 utility value: 5
-// Is item 3 divisible? (y/n): y n
-
-// Boat capacity: 10.00 kg
-// Selected items (name : takenWeight kg -> gainedUtility)
-// 1 : 3.00 kg -> 5.00 utility (100.0% of item)
-// 3 : 3.00 kg -> 5.00 utility (whole item)
-// 2 : 4.00 kg -> 2.29 utility (57.1% of item)
-// Total utility value loaded: 12.29
-// Unused capacity remaining: 0.00 kg
-
+//Name : Siddharth Kakade
+//PRN : 123B1F040
+//Date : 4-8-25
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class ReliefFractionalKnapsack {
+
+    static class Item {
+        String name;
+        double weight;
+        double value;
+        boolean divisible; // true -> can take fraction
+
+        Item(String name, double weight, double value, boolean divisible) {
+            if (weight <= 0) throw new IllegalArgumentException("Weight must be > 0");
+            this.name = name;
+            this.weight = weight;
+            this.value = value;
+            this.divisible = divisible;
+        }
+
+        double density() {
+            return value / weight;
+        }
+    }
+    public static double fillBoat(List<Item> items, double capacityKg) {
+        if (capacityKg <= 0) {
+            System.out.println("Boat capacity should be > 0.");
+            return 0.0;
+        }
+        // Sort by value-per-kg (density) descending
+        items.sort((a, b) -> Double.compare(b.density(), a.density()));
+
+        double remaining = capacityKg;
+        double totalValue = 0.0;
+
+        System.out.printf("Boat capacity: %.2f kg%n", capacityKg);
+        System.out.println("Selected items (name : takenWeight kg -> gainedUtility)");
+
+        for (Item it : items) {
+            if (remaining <= 0) break;
+            if (it.divisible) {
+                // take fraction if needed
+                double takeWeight = Math.min(it.weight, remaining);
+                double gainedValue = it.density() * takeWeight;
+                totalValue += gainedValue;
+                remaining -= takeWeight;
+
+                double percent = (takeWeight / it.weight) * 100.0;
+                System.out.printf("%s : %.2f kg -> %.2f utility (%.1f%% of item)%n",
+                        it.name, takeWeight, gainedValue, percent);
+            } else {
+                // indivisible: only take whole if it fits
+                if (it.weight <= remaining) {
+                    totalValue += it.value;
+                    remaining -= it.weight;
+                    System.out.printf("%s : %.2f kg -> %.2f utility (whole item)%n",
+                            it.name, it.weight, it.value);
+                } else {
+                    System.out.printf("%s : SKIPPED (needs %.2f kg, only %.2f kg left)%n",
+                            it.name, it.weight, remaining);
+                }
+            }
+        }
+        System.out.printf("Total utility value loaded: %.2f%n", totalValue);
+        System.out.printf("Unused capacity remaining: %.2f kg%n", remaining);
+        return totalValue;
+    }
+
+    // One line of a load plan: the share of an item put on the boat and the utility it brings
+    static class Load {
+        final Item item;
+        final double fraction; // 1.0 = whole item
+        final double utility;
+
+        Load(Item item, double fraction, double utility) {
+            this.item = item;
+            this.fraction = fraction;
+            this.utility = utility;
+        }
+
+        double weight() {
+            return item.weight * fraction;
+        }
+    }
+
+    static class LoadPlan {
+        final double capacity;
+        final List<Load> loads;
+        final double totalUtility;
+        final double remaining;
+
+        LoadPlan(double capacity, List<Load> loads, double totalUtility, double remaining) {
+            this.capacity = capacity;
+            this.loads = loads;
+            this.totalUtility = totalUtility;
+            this.remaining = remaining;
+        }
+
+        void print() {
+            System.out.printf("Boat capacity: %.2f kg%n", capacity);
+            System.out.println("Selected items (name : takenWeight kg -> gainedUtility)");
+            for (Load l : loads) {
+                if (l.fraction == 1.0 && !l.item.divisible) {
+                    System.out.printf("%s : %.2f kg -> %.2f utility (whole item)%n", l.item.name, l.weight(), l.utility);
+                } else {
+                    System.out.printf("%s : %.2f kg -> %.2f utility (%.1f%% of item)%n",
+                            l.item.name, l.weight(), l.utility, l.fraction * 100.0);
+                }
+            }
+            System.out.printf("Total utility value loaded: %.2f%n", totalUtility);
+            System.out.printf("Unused capacity remaining: %.2f kg%n", remaining);
+        }
+    }
+
+    // Same utility as fillBoat without sorting or printing. When every item is divisible the
+    // critical (partially taken) item is found by weighted quickselect over the densities in
+    // expected O(n): partition around a pivot density, and if everything denser fits, take it all and
+    // continue on the lighter side, otherwise continue on the denser side. Whole items come first in
+    // the plan in no particular order, the partial item last. With any indivisible item it falls back
+    // to the greedy in density order, like fillBoat. Does not reorder items.
+    public static LoadPlan planLoad(List<Item> items, double capacityKg) {
+        if (capacityKg <= 0) throw new IllegalArgumentException("Boat capacity should be > 0");
+        int n = items.size();
+        double[] density = new double[n];
+        boolean allDivisible = true;
+        for (int i = 0; i < n; i++) {
+            Item it = items.get(i);
+            density[i] = it.density();
+            allDivisible &= it.divisible;
+        }
+        if (!allDivisible) return greedyPlan(items, density, capacityKg);
+
+        int[] idx = new int[n];
+        for (int i = 0; i < n; i++) idx[i] = i;
+        double remaining = capacityKg;
+        int lo = 0, hi = n; // idx[0..lo) are taken whole, the critical item is in idx[lo..hi)
+        Load partial = null;
+        while (lo < hi && remaining > 0) {
+            double pivot = density[idx[lo + ThreadLocalRandom.current().nextInt(hi - lo)]];
+            // 3-way partition: idx[lo..gt) denser, idx[gt..eq) equal, idx[eq..hi) lighter
+            int gt = lo, eq = lo, lt = hi;
+            double denserWeight = 0, equalWeight = 0;
+            while (eq < lt) {
+                int i = idx[eq];
+                if (density[i] > pivot) {
+                    denserWeight += items.get(i).weight;
+                    idx[eq++] = idx[gt];
+                    idx[gt++] = i;
+                } else if (density[i] < pivot) {
+                    idx[eq] = idx[--lt];
+                    idx[lt] = i;
+                } else {
+                    equalWeight += items.get(i).weight;
+                    eq++;
+                }
+            }
+            if (denserWeight > remaining) {
+                hi = gt;
+                continue;
+            }
+            remaining -= denserWeight;
+            if (equalWeight <= remaining) {
+                remaining -= equalWeight;
+                lo = eq;
+                continue;
+            }
+            // The critical item has the pivot density: fill up from the equal run. equalWeight was
+            // summed in partition order, so rounding can leave a sliver once the run is used up.
+            lo = gt;
+            while (remaining > 0 && lo < eq) {
+                Item it = items.get(idx[lo]);
+                if (it.weight <= remaining) {
+                    remaining -= it.weight;
+                    lo++;
+                } else {
+                    double fraction = remaining / it.weight;
+                    partial = new Load(it, fraction, it.value * fraction);
+                    remaining = 0;
+                }
+            }
+            remaining = 0;
+        }
+
+        List<Load> loads = new ArrayList<>(lo + 1);
+        double total = 0;
+        for (int i = 0; i < lo; i++) {
+            Item it = items.get(idx[i]);
+            loads.add(new Load(it, 1.0, it.value));
+            total += it.value;
+        }
+        if (partial != null) {
+            loads.add(partial);
+            total += partial.utility;
+        }
+        return new LoadPlan(capacityKg, loads, total, Math.max(0, remaining));
+    }
+
+    // fillBoat's greedy over precomputed densities (stable, so ties keep list order)
+    private static LoadPlan greedyPlan(List<Item> items, double[] density, double capacityKg) {
+        Integer[] order = new Integer[items.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(density[b], density[a]));
+
+        double remaining = capacityKg;
+        double total = 0;
+        List<Load> loads = new ArrayList<>();
+        for (int i : order) {
+            if (remaining <= 0) break;
+            Item it = items.get(i);
+            if (it.divisible) {
+                double takeWeight = Math.min(it.weight, remaining);
+                double gained = density[i] * takeWeight;
+                loads.add(new Load(it, takeWeight / it.weight, gained));
+                total += gained;
+                remaining -= takeWeight;
+            } else if (it.weight <= remaining) {
+                loads.add(new Load(it, 1.0, it.value));
+                total += it.value;
+                remaining -= it.weight;
+            }
+        }
+        return new LoadPlan(capacityKg, loads, total, remaining);
+    }
+
+    // Inventory kept in fillBoat's order (density descending, ties by insertion) as a treap whose
+    // nodes carry subtree size, weight and value sums, and the smallest weight the greedy would have
+    // to fit to take anything (0 for divisible items, the whole weight for indivisible ones).
+    // add/remove/update are O(log n) expected. Planning walks the tree in greedy order but takes a
+    // subtree wholesale when its weight fits and skips it when nothing in it can fit, so an
+    // all-divisible query is O(log n + items taken). Items are tracked by identity; not thread-safe.
+    static class Inventory {
+        private static final class Node {
+            final Item item;
+            final long seq;
+            final int priority;
+            double density;
+            Node left, right;
+            int size;
+            double sumWeight, sumValue, minTake;
+
+            Node(Item item, long seq, int priority) {
+                this.item = item;
+                this.seq = seq;
+                this.priority = priority;
+            }
+        }
+
+        private final IdentityHashMap<Item, Node> nodes = new IdentityHashMap<>();
+        private final Random random = new Random(17);
+        private Node root;
+        private long nextSeq;
+
+        int size() {
+            return root == null ? 0 : root.size;
+        }
+
+        double totalWeight() {
+            return root == null ? 0 : root.sumWeight;
+        }
+
+        double totalValue() {
+            return root == null ? 0 : root.sumValue;
+        }
+
+        boolean contains(Item it) {
+            return nodes.containsKey(it);
+        }
+
+        void add(Item it) {
+            if (nodes.containsKey(it)) throw new IllegalArgumentException("Item already in inventory: " + it.name);
+            Node node = new Node(it, nextSeq++, random.nextInt());
+            nodes.put(it, node);
+            insert(node);
+        }
+
+        boolean remove(Item it) {
+            Node node = nodes.remove(it);
+            if (node == null) return false;
+            detach(node);
+            return true;
+        }
+
+        // Reweigh / revalue an item in place; it keeps its position among equal densities
+        void update(Item it, double weight, double value, boolean divisible) {
+            if (weight <= 0) throw new IllegalArgumentException("Weight must be > 0");
+            Node node = nodes.get(it);
+            if (node == null) throw new IllegalArgumentException("Item not in inventory: " + it.name);
+            detach(node);
+            it.weight = weight;
+            it.value = value;
+            it.divisible = divisible;
+            insert(node);
+        }
+
+        // rank-th item in loading order (0 = densest)
+        Item get(int rank) {
+            if (rank < 0 || rank >= size()) throw new IndexOutOfBoundsException("rank " + rank);
+            Node t = root;
+            while (true) {
+                int leftSize = size(t.left);
+                if (rank < leftSize) {
+                    t = t.left;
+                } else if (rank == leftSize) {
+                    return t.item;
+                } else {
+                    rank -= leftSize + 1;
+                    t = t.right;
+                }
+            }
+        }
+
+        // Utility fillBoat would load for this capacity, without building the plan
+        double bestUtility(double capacityKg) {
+            if (capacityKg <= 0) throw new IllegalArgumentException("Boat capacity should be > 0");
+            double[] acc = {capacityKg, 0};
+            fill(root, acc, null);
+            return acc[1];
+        }
+
+        // The plan fillBoat would produce, in the same order
+        LoadPlan plan(double capacityKg) {
+            if (capacityKg <= 0) throw new IllegalArgumentException("Boat capacity should be > 0");
+            double[] acc = {capacityKg, 0};
+            List<Load> loads = new ArrayList<>();
+            fill(root, acc, loads);
+            return new LoadPlan(capacityKg, loads, acc[1], acc[0]);
+        }
+
+        // acc = {remaining, total}; loads is null when only the total is wanted
+        private static void fill(Node t, double[] acc, List<Load> loads) {
+            if (t == null || acc[0] <= 0) return;
+            if (t.sumWeight <= acc[0]) {
+                acc[0] -= t.sumWeight;
+                acc[1] += t.sumValue;
+                if (loads != null) collect(t, loads);
+                return;
+            }
+            if (t.minTake > acc[0]) return;
+            fill(t.left, acc, loads);
+            if (acc[0] <= 0) return;
+            Item it = t.item;
+            if (it.divisible) {
+                double takeWeight = Math.min(it.weight, acc[0]);
+                double gained = t.density * takeWeight;
+                acc[0] -= takeWeight;
+                acc[1] += gained;
+                if (loads != null) loads.add(new Load(it, takeWeight / it.weight, gained));
+            } else if (it.weight <= acc[0]) {
+                acc[0] -= it.weight;
+                acc[1] += it.value;
+                if (loads != null) loads.add(new Load(it, 1.0, it.value));
+            }
+            fill(t.right, acc, loads);
+        }
+
+        private static void collect(Node t, List<Load> loads) {
+            if (t == null) return;
+            collect(t.left, loads);
+            loads.add(new Load(t.item, 1.0, t.item.value));
+            collect(t.right, loads);
+        }
+
+        private void insert(Node node) {
+            node.density = node.item.density();
+            node.left = node.right = null;
+            pull(node);
+            Node[] parts = split(root, node.density, node.seq);
+            root = merge(merge(parts[0], node), parts[1]);
+        }
+
+        private void detach(Node node) {
+            Node[] parts = split(root, node.density, node.seq);        // [before, node and after]
+            Node[] rest = split(parts[1], node.density, node.seq + 1); // [node, after]
+            root = merge(parts[0], rest[1]);
+        }
+
+        // Does a come before (density, seq) in loading order?
+        private static boolean before(Node a, double density, long seq) {
+            return a.density > density || (a.density == density && a.seq < seq);
+        }
+
+        // [nodes before (density, seq), the rest]
+        private static Node[] split(Node t, double density, long seq) {
+            if (t == null) return new Node[2];
+            if (before(t, density, seq)) {
+                Node[] parts = split(t.right, density, seq);
+                t.right = parts[0];
+                pull(t);
+                parts[0] = t;
+                return parts;
+            }
+            Node[] parts = split(t.left, density, seq);
+            t.left = parts[1];
+            pull(t);
+            parts[1] = t;
+            return parts;
+        }
+
+        private static Node merge(Node a, Node b) {
+            if (a == null) return b;
+            if (b == null) return a;
+            if (a.priority > b.priority) {
+                a.right = merge(a.right, b);
+                pull(a);
+                return a;
+            }
+            b.left = merge(a, b.left);
+            pull(b);
+            return b;
+        }
+
+        private static int size(Node t) {
+            return t == null ? 0 : t.size;
+        }
+
+        private static void pull(Node t) {
+            Item it = t.item;
+            t.size = 1;
+            t.sumWeight = it.weight;
+            t.sumValue = it.value;
+            t.minTake = it.divisible ? 0 : it.weight;
+            absorb(t, t.left);
+            absorb(t, t.right);
+        }
+
+        private static void absorb(Node t, Node c) {
+            if (c == null) return;
+            t.size += c.size;
+            t.sumWeight += c.sumWeight;
+            t.sumValue += c.sumValue;
+            t.minTake = Math.min(t.minTake, c.minTake);
+        }
+    }
+
+    // Random arrivals, spoilage and reweighs against an Inventory, checked and timed against the
+    // re-sorting greedy
+    static void streamDemo(int n, int updates) {
+        Random rnd = new Random(11);
+        List<Item> stock = new ArrayList<>();
+        Inventory inventory = new Inventory();
+        for (int i = 0; i < n; i++) {
+            Item it = new Item("SKU" + i, 1 + rnd.nextInt(500), rnd.nextInt(10000), rnd.nextInt(10) != 0);
+            stock.add(it);
+            inventory.add(it);
+        }
+        long incremental = 0, resort = 0;
+        int mismatches = 0, queries = 0;
+        for (int u = 0; u < updates; u++) {
+            int op = rnd.nextInt(3);
+            if (op == 0 || stock.isEmpty()) {
+                Item it = new Item("SKU" + (n + u), 1 + rnd.nextInt(500), rnd.nextInt(10000), rnd.nextInt(10) != 0);
+                stock.add(it);
+                inventory.add(it);
+            } else if (op == 1) {
+                inventory.remove(stock.remove(rnd.nextInt(stock.size())));
+            } else {
+                Item it = stock.get(rnd.nextInt(stock.size()));
+                inventory.update(it, 1 + rnd.nextInt(500), it.value, it.divisible);
+            }
+            if (u % 100 != 0) continue;
+            double capacity = 1 + rnd.nextDouble() * inventory.totalWeight() / 4;
+            long t0 = System.nanoTime();
+            double fast = inventory.bestUtility(capacity);
+            long t1 = System.nanoTime();
+            double[] density = new double[stock.size()];
+            for (int i = 0; i < density.length; i++) density[i] = stock.get(i).density();
+            double slow = greedyPlan(stock, density, capacity).totalUtility;
+            long t2 = System.nanoTime();
+            incremental += t1 - t0;
+            resort += t2 - t1;
+            queries++;
+            if (Math.abs(fast - slow) > 1e-6 * Math.max(1, Math.abs(slow))) mismatches++;
+        }
+        System.out.printf("%d items, %d updates, %d queries: incremental %.3f ms/query, re-sort %.3f ms/query, %d mismatches%n",
+                n, updates, queries, incremental / 1e6 / queries, resort / 1e6 / queries, mismatches);
+    }
+
+    // ---- Fleet loading ----
+
+    static class Boat {
+        final String name;
+        final double capacity;
+        final int priority; // higher loads first when boats share stock
+
+        Boat(String name, double capacity, int priority) {
+            if (capacity <= 0) throw new IllegalArgumentException("Boat capacity should be > 0");
+            this.name = name;
+            this.capacity = capacity;
+            this.priority = priority;
+        }
+    }
+
+    // Read-only snapshot of the stock in fillBoat's order (stable density sort) with prefix weight and
+    // value sums, and a min-tree over the weight each item needs to fit (0 when divisible). Weights and
+    // values are copied, so later changes to the Items do not leak in. Safe to share between threads.
+    static class DensityIndex {
+        final Item[] items;
+        final double[] weight, value, density;
+        final boolean[] divisible;
+        final double[] prefixWeight, prefixValue; // sums over items[0..i)
+        final boolean allDivisible;
+        private final int leaves;
+        private final double[] minTake;           // 1-based segment tree over leaves slots
+
+        DensityIndex(List<Item> stock) {
+            int n = stock.size();
+            double[] d = new double[n];
+            for (int i = 0; i < n; i++) d[i] = stock.get(i).density();
+            int[] order = densityOrder(d);
+
+            items = new Item[n];
+            weight = new double[n];
+            value = new double[n];
+            density = new double[n];
+            divisible = new boolean[n];
+            prefixWeight = new double[n + 1];
+            prefixValue = new double[n + 1];
+            boolean all = true;
+            for (int i = 0; i < n; i++) {
+                Item it = stock.get(order[i]);
+                items[i] = it;
+                weight[i] = it.weight;
+                value[i] = it.value;
+                density[i] = d[order[i]];
+                divisible[i] = it.divisible;
+                all &= it.divisible;
+                prefixWeight[i + 1] = prefixWeight[i] + weight[i];
+                prefixValue[i + 1] = prefixValue[i] + value[i];
+            }
+            allDivisible = all;
+
+            int size = 1;
+            while (size < n) size <<= 1;
+            leaves = size;
+            minTake = new double[2 * size];
+            Arrays.fill(minTake, Double.POSITIVE_INFINITY);
+            for (int i = 0; i < n; i++) minTake[size + i] = divisible[i] ? 0 : weight[i];
+            for (int node = size - 1; node >= 1; node--) minTake[node] = Math.min(minTake[2 * node], minTake[2 * node + 1]);
+        }
+
+        int size() {
+            return items.length;
+        }
+
+        // Indices by density descending, ties in index order (bottom-up merge sort on primitives)
+        static int[] densityOrder(double[] d) {
+            int n = d.length;
+            int[] a = new int[n], b = new int[n];
+            for (int i = 0; i < n; i++) a[i] = i;
+            for (int width = 1; width < n; width <<= 1) {
+                for (int lo = 0; lo < n; lo += 2 * width) {
+                    int mid = Math.min(lo + width, n), hi = Math.min(lo + 2 * width, n);
+                    int i = lo, j = mid, k = lo;
+                    while (i < mid && j < hi) b[k++] = d[a[j]] > d[a[i]] ? a[j++] : a[i++];
+                    while (i < mid) b[k++] = a[i++];
+                    while (j < hi) b[k++] = a[j++];
+                }
+                int[] t = a;
+                a = b;
+                b = t;
+            }
+            return a;
+        }
+
+        // Largest end >= from with prefixWeight[end] - prefixWeight[from] <= budget
+        int fitEnd(int from, double budget) {
+            double limit = prefixWeight[from] + budget;
+            int lo = from, hi = items.length;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (prefixWeight[mid] <= limit) lo = mid; else hi = mid - 1;
+            }
+            return lo;
+        }
+
+        // First index >= from whose item the greedy could take with this much room, or -1
+        int firstFit(int from, double room) {
+            return firstFit(1, 0, leaves, from, room);
+        }
+
+        private int firstFit(int node, int lo, int hi, int from, double room) {
+            if (hi <= from || minTake[node] > room) return -1;
+            if (hi - lo == 1) return lo;
+            int mid = (lo + hi) >>> 1;
+            int found = firstFit(2 * node, lo, mid, from, room);
+            return found >= 0 ? found : firstFit(2 * node + 1, mid, hi, from, room);
+        }
+
+        // fillBoat's greedy for one boat over the whole stock: whole runs of items that fit are found by
+        // binary search on the prefix sums and items that cannot fit are jumped over with the min-tree,
+        // so the cost is O(log n) per run of taken items rather than per item scanned
+        LoadPlan plan(double capacityKg) {
+            List<Load> loads = new ArrayList<>();
+            double remaining = capacityKg, total = 0;
+            int pos = 0;
+            while (remaining > 0 && (pos = firstFit(pos, remaining)) >= 0) {
+                int end = fitEnd(pos, remaining);
+                for (int i = pos; i < end; i++) loads.add(new Load(items[i], 1.0, value[i]));
+                total += prefixValue[end] - prefixValue[pos];
+                remaining -= prefixWeight[end] - prefixWeight[pos];
+                pos = end;
+                if (pos < items.length && divisible[pos] && remaining > 0) {
+                    double gained = density[pos] * remaining;
+                    loads.add(new Load(items[pos], remaining / weight[pos], gained));
+                    total += gained;
+                    remaining = 0;
+                }
+            }
+            return new LoadPlan(capacityKg, loads, total, Math.max(0, remaining));
+        }
+
+        // The part of the stock between cumulative weights from and from + capacityKg
+        LoadPlan slice(double from, double capacityKg) {
+            List<Load> loads = new ArrayList<>();
+            double to = from + capacityKg, total = 0, loaded = 0;
+            int i = Math.max(0, fitEnd(0, from) - 1);
+            for (; i < items.length && prefixWeight[i] < to; i++) {
+                double take = Math.min(prefixWeight[i + 1], to) - Math.max(prefixWeight[i], from);
+                if (take <= 0) continue;
+                boolean whole = take >= weight[i];
+                double gained = whole ? value[i] : density[i] * take;
+                loads.add(new Load(items[i], whole ? 1.0 : take / weight[i], gained));
+                total += gained;
+                loaded += whole ? weight[i] : take;
+            }
+            return new LoadPlan(capacityKg, loads, total, Math.max(0, capacityKg - loaded));
+        }
+    }
+
+    // What-if: each boat's best plan if it had the whole stock to itself; boats are independent
+    // scenarios, evaluated with fork/join. plans[i] belongs to boats.get(i).
+    public static LoadPlan[] evaluateFleet(DensityIndex index, List<Boat> boats) {
+        LoadPlan[] plans = new LoadPlan[boats.size()];
+        ForkJoinPool.commonPool().invoke(new FleetTask(boats.size(), 0, boats.size(),
+                i -> plans[i] = index.plan(boats.get(i).capacity)));
+        return plans;
+    }
+
+    // Share one stock between the boats: in priority order (ties by list order) each boat greedily
+    // loads the densest stock still left, so nothing is counted twice. When every item is divisible
+    // boat k simply gets the stock between cumulative weights C(k-1) and C(k), where C sums the
+    // capacities ahead of it, and the slices are cut in parallel. Indivisible items make each boat's
+    // choice depend on what the ones before it skipped, so that case runs sequentially.
+    public static LoadPlan[] allocateFleet(DensityIndex index, List<Boat> boats) {
+        int m = boats.size();
+        Integer[] order = new Integer[m];
+        for (int i = 0; i < m; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Integer.compare(boats.get(b).priority, boats.get(a).priority));
+        LoadPlan[] plans = new LoadPlan[m];
+
+        if (index.allDivisible) {
+            double[] start = new double[m];
+            double at = 0;
+            for (int k = 0; k < m; k++) {
+                start[k] = at;
+                at += boats.get(order[k]).capacity;
+            }
+            ForkJoinPool.commonPool().invoke(new FleetTask(m, 0, m,
+                    k -> plans[order[k]] = index.slice(start[k], boats.get(order[k]).capacity)));
+            return plans;
+        }
+
+        double[] left = index.weight.clone(); // stock still on the dock, per item
+        int first = 0;                        // items before this are used up
+        for (int k = 0; k < m; k++) {
+            Boat boat = boats.get(order[k]);
+            List<Load> loads = new ArrayList<>();
+            double remaining = boat.capacity, total = 0;
+            while (first < left.length && left[first] <= 0) first++;
+            for (int i = first; i < left.length && remaining > 0; i++) {
+                if (left[i] <= 0) continue;
+                if (index.divisible[i]) {
+                    double take = Math.min(left[i], remaining);
+                    double gained = index.density[i] * take;
+                    loads.add(new Load(index.items[i], take / index.weight[i], gained));
+                    total += gained;
+                    remaining -= take;
+                    left[i] -= take;
+                } else if (left[i] <= remaining) {
+                    loads.add(new Load(index.items[i], 1.0, index.value[i]));
+                    total += index.value[i];
+                    remaining -= left[i];
+                    left[i] = 0;
+                }
+            }
+            plans[order[k]] = new LoadPlan(boat.capacity, loads, total, remaining);
+        }
+        return plans;
+    }
+
+    interface BoatJob {
+        void run(int i);
+    }
+
+    // Runs job(i) for i in [from, to), splitting until a few boats per task
+    static class FleetTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int boats, from, to;
+        private final BoatJob job;
+
+        FleetTask(int boats, int from, int to, BoatJob job) {
+            this.boats = boats;
+            this.from = from;
+            this.to = to;
+            this.job = job;
+        }
+
+        @Override
+        protected void compute() {
+            int grain = Math.max(1, boats / (4 * ForkJoinPool.getCommonPoolParallelism()));
+            if (to - from <= grain) {
+                for (int i = from; i < to; i++) job.run(i);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new FleetTask(boats, from, mid, job), new FleetTask(boats, mid, to, job));
+        }
+    }
+
+    // Random fleet against a random stock: timing, and a check that allocation never hands out more
+    // of an item than exists
+    static void fleetDemo(int boatCount, int n, boolean mixed) {
+        Random rnd = new Random(23);
+        List<Item> stock = new ArrayList<>(n);
+        double totalWeight = 0;
+        for (int i = 0; i < n; i++) {
+            double w = 1 + rnd.nextInt(500);
+            stock.add(new Item("SKU" + i, w, rnd.nextInt(10000), !mixed || rnd.nextInt(10) != 0));
+            totalWeight += w;
+        }
+        List<Boat> boats = new ArrayList<>(boatCount);
+        for (int b = 0; b < boatCount; b++) {
+            boats.add(new Boat("Boat" + b, 1 + rnd.nextDouble() * 2 * totalWeight / boatCount / 3, rnd.nextInt(5)));
+        }
+
+        long t0 = System.nanoTime();
+        DensityIndex index = new DensityIndex(stock);
+        long t1 = System.nanoTime();
+        LoadPlan[] whatIf = evaluateFleet(index, boats);
+        long t2 = System.nanoTime();
+        LoadPlan[] shared = allocateFleet(index, boats);
+        long t3 = System.nanoTime();
+
+        IdentityHashMap<Item, Double> used = new IdentityHashMap<>();
+        double sharedUtility = 0, whatIfUtility = 0;
+        for (LoadPlan p : shared) {
+            sharedUtility += p.totalUtility;
+            for (Load l : p.loads) used.merge(l.item, l.fraction, Double::sum);
+        }
+        for (LoadPlan p : whatIf) whatIfUtility += p.totalUtility;
+        int over = 0;
+        for (double f : used.values()) if (f > 1 + 1e-9) over++;
+        System.out.printf("%d boats, %d %s items: index %.1f ms, what-if %.1f ms (utility %.2f), "
+                        + "allocation %.1f ms (utility %.2f, %d items over-allocated)%n",
+                boatCount, n, mixed ? "mixed" : "divisible", (t1 - t0) / 1e6, (t2 - t1) / 1e6, whatIfUtility,
+                (t3 - t2) / 1e6, sharedUtility, over);
+    }
+
+    // Random all-divisible inventory: planLoad against the sorting greedy
+    static void benchmark(int n) {
+        Random rnd = new Random(7);
+        List<Item> items = new ArrayList<>(n);
+        double totalWeight = 0;
+        for (int i = 0; i < n; i++) {
+            double w = 1 + rnd.nextInt(500);
+            items.add(new Item("SKU" + i, w, rnd.nextInt(10000), true));
+            totalWeight += w;
+        }
+        double capacity = totalWeight / 3;
+        double[] density = new double[n];
+        for (int i = 0; i < n; i++) density[i] = items.get(i).density();
+        for (int round = 0; round < 3; round++) {
+            long t0 = System.nanoTime();
+            LoadPlan linear = planLoad(items, capacity);
+            long t1 = System.nanoTime();
+            LoadPlan sorted = greedyPlan(items, density, capacity);
+            long t2 = System.nanoTime();
+            System.out.printf("n=%d  selection: %.2f ms (utility %.2f)  sort: %.2f ms (utility %.2f)%n",
+                    n, (t1 - t0) / 1e6, linear.totalUtility, (t2 - t1) / 1e6, sorted.totalUtility);
+        }
+
+        // One equal-density run filled to just under its total weight: rounding in the run's sum
+        // must not send planLoad past the end of the run
+        int mismatches = 0, cases = 2000;
+        for (int c = 0; c < cases; c++) {
+            int m = 2 + rnd.nextInt(10);
+            List<Item> run = new ArrayList<>(m);
+            double sum = 0;
+            for (int i = 0; i < m; i++) {
+                double w = (1 + rnd.nextInt(1000)) / 10.0;
+                run.add(new Item("EQ" + i, w, 2 * w, true));
+                sum += w;
+            }
+            double[] runDensity = new double[m];
+            for (int i = 0; i < m; i++) runDensity[i] = run.get(i).density();
+            double cap = Math.nextDown(sum);
+            double fast = planLoad(run, cap).totalUtility, slow = greedyPlan(run, runDensity, cap).totalUtility;
+            if (Math.abs(fast - slow) > 1e-6 * Math.max(1, Math.abs(slow))) mismatches++;
+        }
+        System.out.printf("equal-density runs: %d cases, %d mismatches%n", cases, mismatches);
+    }
+
+    // Simple user input demo
+    // Usage: java ReliefFractionalKnapsack           (greedy, prints as it loads)
+    //        java ReliefFractionalKnapsack linear    (same prompts, solved by planLoad)
+    //        java ReliefFractionalKnapsack bench [n] (random inventory timing)
+    //        java ReliefFractionalKnapsack stream [n] [updates] (incremental Inventory against re-sorting)
+    //        java ReliefFractionalKnapsack fleet [boats] [n] (parallel fleet loading, divisible and mixed stock)
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("bench")) {
+            benchmark(args.length > 1 ? Integer.parseInt(args[1]) : 500000);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("fleet")) {
+            int boats = args.length > 1 ? Integer.parseInt(args[1]) : 120;
+            int n = args.length > 2 ? Integer.parseInt(args[2]) : 200000;
+            fleetDemo(boats, n, false);
+            fleetDemo(boats, n, true);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("stream")) {
+            streamDemo(args.length > 1 ? Integer.parseInt(args[1]) : 100000, args.length > 2 ? Integer.parseInt(args[2]) : 20000);
+            return;
+        }
+        boolean linear = args.length > 0 && args[0].equals("linear");
+        Scanner sc = new Scanner(System.in);
+        try {
+            System.out.print("Enter boat capacity W (kg): ");
+            double W = sc.nextDouble();
+            System.out.print("Enter number of different item types n: ");
+            int n = sc.nextInt();
+            sc.nextLine();
+
+            List<Item> items = new ArrayList<>();
+            for (int i = 1; i <= n; i++) {
+                System.out.printf("Item %d name: ", i);
+                String name = sc.nextLine().trim();
+                System.out.printf("Item %d weight (kg): ", i);
+                double w = sc.nextDouble();
+                System.out.printf("Item %d utility value: ", i);
+                double v = sc.nextDouble();
+                sc.nextLine();
+                System.out.printf("Is item %d divisible? (y/n): ", i);
+                String d = sc.nextLine().trim().toLowerCase();
+                boolean divisible = d.equals("y") || d.equals("yes");
+                // Basic validation
+                if (w <= 0) {
+                    System.out.println("Weight must be > 0. Please re-enter this item.");
+                    i--;
+                    continue;
+                }
+                items.add(new Item(name, w, v, divisible));
+            }
+            System.out.println();
+            if (linear) planLoad(items, W).print(); else fillBoat(items, W);
+        } catch (InputMismatchException ime) {
+            System.out.println("Invalid input. Please enter numbers where required.");
+        } catch (IllegalArgumentException iae) {
+            System.out.println("Error: " + iae.getMessage());
+        } finally {
+            sc.close();
+        }
+    }
+}
+
+
+// OUTPUT
+// Enter boat capacity W (kg): 10
+// Enter number of different item types n: 3
+// Item 1 name: 4 1
+// Item 1 weight (kg): 3
+// Item 1 utility value: 5
+// Is item 1 divisible? (y/n): y
+// Item 2 name: 2
+// Item 2 weight (kg): 7
+// Item 2 utility value: 4
+// Is item 2 divisible? (y/n): y
+// Item 3 name: 3
+// Item 3 weight (kg): 3
+// Item 3 utility value: 5
+// Is item 3 divisible? (y/n): y n
+
+// Boat capacity: 10.00 kg
+// Selected items (name : takenWeight kg -> gainedUtility)
+// 1 : 3.00 kg -> 5.00 utility (100.0% of item)
+// 3 : 3.00 kg -> 5.00 utility (whole item)
+// 2 : 4.00 kg -> 2.29 utility (57.1% of item)
+// Total utility value loaded: 12.29
+// Unused capacity remaining: 0.00 kg
+